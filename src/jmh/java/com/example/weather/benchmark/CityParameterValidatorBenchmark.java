@@ -0,0 +1,37 @@
+package com.example.weather.benchmark;
+
+import com.example.weather.controller.validation.CityParameterValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The city validation that runs on every request, for a valid name, a numeric value and a blank value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CityParameterValidatorBenchmark {
+
+    @Param({"Antalya", "12345", "   "})
+    public String city;
+
+    private final CityParameterValidator validator = new CityParameterValidator();
+
+    @Benchmark
+    public boolean isValid() {
+        return validator.isValid(city, null);
+    }
+}
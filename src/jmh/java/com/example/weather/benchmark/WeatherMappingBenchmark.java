@@ -0,0 +1,85 @@
+package com.example.weather.benchmark;
+
+import com.example.weather.TestSupport;
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.client.WeatherStackResponseDecoder;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.dto.WeatherReading;
+import com.example.weather.dto.WeatherResponse;
+import com.example.weather.model.WeatherEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a weatherstack response into a {@link WeatherReading}, with the streaming decoder the service uses
+ * and with a full {@link WeatherResponse} data binding as a baseline, {@link WeatherDto#convert(WeatherEntity)}, and encoding
+ * a response body with Jackson against looking it up in the {@link WeatherResponseCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeatherMappingBenchmark extends TestSupport {
+
+    private ObjectMapper objectMapper;
+    private WeatherStackResponseDecoder responseDecoder;
+    private byte[] responseBody;
+    private WeatherEntity weatherEntity;
+    private WeatherDto weather;
+    private ObjectMapper responseMapper;
+    private WeatherResponseCache responseCache;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        responseDecoder = new WeatherStackResponseDecoder(objectMapper);
+        responseBody = getAntalyaWeatherJson().getBytes(StandardCharsets.UTF_8);
+        weatherEntity = getSavedWeatherEntity("2023-05-19 12:00");
+        weather = WeatherDto.convert(weatherEntity);
+        responseMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        responseCache = new WeatherResponseCache(responseMapper, Clock.systemDefaultZone(), new SimpleMeterRegistry(), 30, 10000);
+    }
+
+    @Benchmark
+    public WeatherReading decodeWithStreamingDecoder() {
+        return responseDecoder.decode(responseBody);
+    }
+
+    @Benchmark
+    public WeatherResponse decodeWithDataBinding() throws IOException {
+        return objectMapper.readValue(responseBody, WeatherResponse.class);
+    }
+
+    @Benchmark
+    public WeatherDto convertEntity() {
+        return WeatherDto.convert(weatherEntity);
+    }
+
+    @Benchmark
+    public byte[] encodeWithJackson() throws IOException {
+        return responseMapper.writeValueAsBytes(weather);
+    }
+
+    @Benchmark
+    public byte[] encodeWithResponseCache() {
+        return responseCache.encode(weather).body();
+    }
+}
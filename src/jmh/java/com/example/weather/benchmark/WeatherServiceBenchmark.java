@@ -0,0 +1,222 @@
+package com.example.weather.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.example.weather.TestSupport;
+import com.example.weather.cache.LocalSharedWeatherTier;
+import com.example.weather.client.WeatherStackClient;
+import com.example.weather.client.WeatherStackResponseDecoder;
+import com.example.weather.config.SpringCachingConfig;
+import com.example.weather.config.WeatherCacheExpiry;
+import com.example.weather.constants.Constants;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.quota.LocalUpstreamQuotaStore;
+import com.example.weather.quota.UpstreamQuota;
+import com.example.weather.repositroy.CityAliasRepository;
+import com.example.weather.repositroy.WeatherRepository;
+import com.example.weather.service.CityAliasIndex;
+import com.example.weather.service.CityNameNormalizer;
+import com.example.weather.service.HotCityTracker;
+import com.example.weather.service.NegativeWeatherCache;
+import com.example.weather.service.UpstreamRequestCoalescer;
+import com.example.weather.service.WeatherRefreshExecutor;
+import com.example.weather.service.WeatherService;
+import com.example.weather.service.WeatherStageMetrics;
+import com.example.weather.service.WeatherWriteBehindQueue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link WeatherService#getWeather(String)} for each way a report can be served: a near cache hit,
+ * an up-to-date database row and a weatherstack call. The database and weatherstack are in-memory stubs,
+ * and the shared cache tier is the in-process one, so only the service's own work is measured. Each benchmark
+ * looks up a city of its own, and the weatherstack calls are counted so a trial fails if its path was not taken.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeatherServiceBenchmark extends TestSupport {
+    private static final String CACHED_CITY = "Istanbul";
+    private static final String DATABASE_CITY = "Izmir";
+
+    private WeatherService weatherService;
+    private WeatherWriteBehindQueue writeBehindQueue;
+    private WeatherRefreshExecutor refreshExecutor;
+    private CityAliasIndex cityAliasIndex;
+    private Cache weatherCache;
+    private StubWeatherStackClient weatherStackClient;
+    private final LongAdder upstreamMisses = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // without Spring Boot logback logs at DEBUG, keep the INFO level the application runs with
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.INFO);
+
+        Constants constants = new Constants();
+        constants.setApiCallLimit(30);
+        constants.setWeatherCacheName("weathers");
+        constants.setStaleWhileRevalidate(false);
+        constants.setBatchMaxConcurrency(8);
+
+        Clock clock = Clock.systemDefaultZone();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpringCachingConfig cachingConfig = new SpringCachingConfig();
+        WeatherCacheExpiry expiry = cachingConfig.weatherCacheExpiry(30, clock);
+        CacheManager cacheManager = cachingConfig.cacheManager(cachingConfig.nearCacheManager(cachingConfig.caffeineConfig(10000, expiry), "weathers"),
+                new LocalSharedWeatherTier(clock, 10000), expiry, 10000, 6000, 50);
+        weatherCache = cacheManager.getCache("weathers");
+
+        WeatherRepository weatherRepository = stubRepository(new WeatherDto(DATABASE_CITY, "Turkey", 21, LocalDateTime.now(clock)));
+        // reports are written behind as in the application, but a queued report never answers a lookup, so every
+        // upstream miss reaches the weatherstack stub instead of being served from the queue
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 50, 1000, 10000, 3, 1000, meterRegistry) {
+            @Override
+            public Optional<WeatherDto> pendingWeather(String city) {
+                return Optional.empty();
+            }
+        };
+        refreshExecutor = new WeatherRefreshExecutor(1, 10, false);
+        cityAliasIndex = new CityAliasIndex(stubAliasRepository(), new CityNameNormalizer(), 10000, meterRegistry);
+        weatherStackClient = new StubWeatherStackClient(getAntalyaWeatherJson(), meterRegistry);
+        weatherService = new WeatherService(weatherRepository, weatherStackClient,
+                new WeatherStackResponseDecoder(new ObjectMapper()), new UpstreamRequestCoalescer(meterRegistry),
+                new UpstreamQuota(new LocalUpstreamQuotaStore(Long.MAX_VALUE, Long.MAX_VALUE, clock), meterRegistry), writeBehindQueue,
+                refreshExecutor, new HotCityTracker(1000, 0.5), cityAliasIndex,
+                new NegativeWeatherCache(300000, 10000, new String[]{"601", "615"}, meterRegistry),
+                new WeatherStageMetrics(meterRegistry), event -> {
+                }, cacheManager, clock);
+
+        weatherService.getWeather(CACHED_CITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        writeBehindQueue.destroy();
+        refreshExecutor.destroy();
+        // the cached city was fetched once in setUp, the database city never, the upstream city on every miss
+        checkUpstreamCalls(CACHED_CITY, 1);
+        checkUpstreamCalls(DATABASE_CITY, 0);
+        checkUpstreamCalls(requestedCity, upstreamMisses.sum());
+    }
+
+    @Benchmark
+    public WeatherDto cacheHit() {
+        return weatherService.getWeather(CACHED_CITY);
+    }
+
+    @Benchmark
+    public WeatherDto databaseHit() {
+        weatherCache.evict(cityAliasIndex.resolve(DATABASE_CITY));
+        return weatherService.getWeather(DATABASE_CITY);
+    }
+
+    @Benchmark
+    public WeatherDto upstreamMiss() {
+        upstreamMisses.increment();
+        weatherCache.evict(cityAliasIndex.resolve(requestedCity));
+        return weatherService.getWeather(requestedCity);
+    }
+
+    private void checkUpstreamCalls(String city, long expected) {
+        long calls = weatherStackClient.calls(city);
+        if (calls != expected) {
+            throw new IllegalStateException(String.format("%d weatherstack calls for %s, expected %d", calls, city, expected));
+        }
+    }
+
+    /**
+     * Answers the two repository calls on the getWeather path: Izmir has an up-to-date row, every other city has none.
+     * Saved rows are dropped.
+     */
+    private static WeatherRepository stubRepository(WeatherDto izmir) {
+        return (WeatherRepository) Proxy.newProxyInstance(WeatherRepository.class.getClassLoader(), new Class<?>[]{WeatherRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findLatestByRequestedCityName" -> "izmir".equals(args[0]) ? Optional.of(izmir) : Optional.empty();
+                    case "saveAll" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "StubWeatherRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // no alias is stored yet, they are learned from the upstream responses and kept in memory
+    private static CityAliasRepository stubAliasRepository() {
+        return (CityAliasRepository) Proxy.newProxyInstance(CityAliasRepository.class.getClassLoader(), new Class<?>[]{CityAliasRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.empty();
+                    case "save" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "StubCityAliasRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Answers each query with the Antalya payload renamed to the queried city, so every city stays a city of its own
+     * instead of becoming an alias of Antalya. A city is queried by its name first and by its canonical
+     * "name, country" key once that is learned, both are the same city here. Bodies are built once per city and
+     * calls are counted per city.
+     */
+    private static class StubWeatherStackClient extends WeatherStackClient {
+        private final String responseJson;
+        private final Map<String, byte[]> responseBodies = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+
+        StubWeatherStackClient(String responseJson, SimpleMeterRegistry meterRegistry) {
+            super(null, CircuitBreaker.ofDefaults("weatherstack"), Bulkhead.ofDefaults("weatherstack"), TimeLimiter.ofDefaults(), meterRegistry);
+            this.responseJson = responseJson;
+        }
+
+        @Override
+        public CompletableFuture<byte[]> getCurrentWeather(String query) {
+            String city = city(query);
+            calls.computeIfAbsent(city, key -> new LongAdder()).increment();
+            return CompletableFuture.completedFuture(responseBodies.computeIfAbsent(city, key -> responseJson
+                    .replace("Antalya", Character.toUpperCase(key.charAt(0)) + key.substring(1))
+                    .getBytes(StandardCharsets.UTF_8)));
+        }
+
+        long calls(String city) {
+            LongAdder count = calls.get(city(city));
+            return count == null ? 0 : count.sum();
+        }
+
+        private static String city(String query) {
+            return query.split(",")[0].trim().toLowerCase(Locale.ROOT);
+        }
+    }
+}
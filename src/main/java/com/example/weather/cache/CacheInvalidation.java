@@ -0,0 +1,15 @@
+package com.example.weather.cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Tells the other instances to drop a city from their near cache, or every city when {@code city} is null.
+ */
+public record CacheInvalidation(String nodeId, String city) {
+
+    // not part of the message, the other instances would fail to read it back
+    @JsonIgnore
+    public boolean isClear() {
+        return city == null;
+    }
+}
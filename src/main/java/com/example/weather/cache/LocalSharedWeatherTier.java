@@ -0,0 +1,114 @@
+package com.example.weather.cache;
+
+import com.example.weather.dto.WeatherDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for the shared tier. It behaves like the Redis tier for the instances that share
+ * the same object, so a single instance needs no extra infrastructure and tests can run several
+ * near caches against one tier. Reports are kept in a Caffeine cache bounded like the near cache, each
+ * entry expires after the time to live it was put with. The near cache holds the same {@link WeatherDto}
+ * objects, so in a single instance this tier adds an entry per city, not a second copy of the reports.
+ */
+public class LocalSharedWeatherTier implements SharedWeatherTier {
+
+    private final Cache<String, SharedWeather> weathers;
+    private final ConcurrentMap<String, Expiring<String>> locks = new ConcurrentHashMap<>();
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+    private final Clock clock;
+
+    public LocalSharedWeatherTier(Clock clock, int maxSize) {
+        this.clock = clock;
+        this.weathers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TimeToLiveExpiry())
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+    }
+
+    @Override
+    public Optional<WeatherDto> get(String city) {
+        return Optional.ofNullable(weathers.getIfPresent(city)).map(SharedWeather::weather);
+    }
+
+    @Override
+    public void put(String city, WeatherDto weather, Duration timeToLive) {
+        weathers.put(city, new SharedWeather(weather, timeToLive));
+    }
+
+    @Override
+    public void evict(String city) {
+        weathers.invalidate(city);
+    }
+
+    @Override
+    public void clear() {
+        weathers.invalidateAll();
+    }
+
+    @Override
+    public Optional<String> tryLock(String city, Duration lease) {
+        String token = UUID.randomUUID().toString();
+        Instant now = clock.instant();
+        Expiring<String> lock = locks.compute(city, (key, current) ->
+                current == null || current.isExpired(now) ? new Expiring<>(token, now.plus(lease)) : current);
+        return token.equals(lock.value()) ? Optional.of(token) : Optional.empty();
+    }
+
+    @Override
+    public void unlock(String city, String token) {
+        locks.computeIfPresent(city, (key, current) -> token.equals(current.value()) ? null : current);
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        listeners.forEach(listener -> listener.accept(invalidation));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    private record SharedWeather(WeatherDto weather, Duration timeToLive) {
+    }
+
+    // each report lives for the time to live it was put with
+    private static final class TimeToLiveExpiry implements Expiry<String, SharedWeather> {
+
+        @Override
+        public long expireAfterCreate(String city, SharedWeather weather, long currentTime) {
+            return weather.timeToLive().toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String city, SharedWeather weather, long currentTime, long currentDuration) {
+            return weather.timeToLive().toNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String city, SharedWeather weather, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private record Expiring<T>(T value, Instant expiresAt) {
+        boolean isExpired(Instant now) {
+            return !expiresAt.isAfter(now);
+        }
+    }
+}
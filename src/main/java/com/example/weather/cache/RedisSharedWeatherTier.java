@@ -0,0 +1,131 @@
+package com.example.weather.cache;
+
+import com.example.weather.dto.WeatherDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Shared tier on Redis. Reports are plain keys with a time to live, a load lock is a SET NX PX key
+ * released only by its owner, and invalidations go over a pub/sub channel.
+ */
+public class RedisSharedWeatherTier implements SharedWeatherTier {
+    private static final Logger logger = LoggerFactory.getLogger(RedisSharedWeatherTier.class);
+
+    private static final String WEATHER_KEY_PREFIX = "weather:cache:";
+    private static final String LOCK_KEY_PREFIX = "weather:lock:";
+    private static final ChannelTopic INVALIDATION_TOPIC = ChannelTopic.of("weather:invalidation");
+    private static final RedisScript<Long> UNLOCK_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+
+    public RedisSharedWeatherTier(StringRedisTemplate redisTemplate,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Optional<WeatherDto> get(String city) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(WEATHER_KEY_PREFIX + city))
+                .map(json -> read(json, SharedWeather.class))
+                .map(SharedWeather::toWeatherDto);
+    }
+
+    @Override
+    public void put(String city, WeatherDto weather, Duration timeToLive) {
+        redisTemplate.opsForValue().set(WEATHER_KEY_PREFIX + city, write(SharedWeather.of(weather)), timeToLive);
+    }
+
+    @Override
+    public void evict(String city) {
+        redisTemplate.delete(WEATHER_KEY_PREFIX + city);
+    }
+
+    @Override
+    public void clear() {
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match(WEATHER_KEY_PREFIX + "*").count(1000).build())) {
+            cursor.forEachRemaining(keys::add);
+        }
+        if (!keys.isEmpty()) {
+            redisTemplate.delete(keys);
+        }
+    }
+
+    @Override
+    public Optional<String> tryLock(String city, Duration lease) {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY_PREFIX + city, token, lease);
+        return Boolean.TRUE.equals(locked) ? Optional.of(token) : Optional.empty();
+    }
+
+    @Override
+    public void unlock(String city, String token) {
+        redisTemplate.execute(UNLOCK_SCRIPT, List.of(LOCK_KEY_PREFIX + city), token);
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        redisTemplate.convertAndSend(INVALIDATION_TOPIC.getTopic(), write(invalidation));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                listener.accept(read(new String(message.getBody(), StandardCharsets.UTF_8), CacheInvalidation.class));
+            } catch (RuntimeException e) {
+                logger.warn("Could not handle cache invalidation message", e);
+            }
+        }, INVALIDATION_TOPIC);
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    // WeatherDto formats updatedTime to the minute for the api, the shared copy keeps it exact
+    private record SharedWeather(String cityName, String country, Integer temperature, LocalDateTime updatedTime) {
+        static SharedWeather of(WeatherDto weather) {
+            return new SharedWeather(weather.cityName(), weather.country(), weather.temperature(), weather.updatedTime());
+        }
+
+        WeatherDto toWeatherDto() {
+            return new WeatherDto(cityName, country, temperature, updatedTime);
+        }
+    }
+}
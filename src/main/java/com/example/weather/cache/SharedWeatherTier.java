@@ -0,0 +1,34 @@
+package com.example.weather.cache;
+
+import com.example.weather.dto.WeatherDto;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * The cache tier shared by every instance of the application. Besides the weather reports it holds
+ * the per city load locks and carries invalidations, so the near caches of the other instances drop
+ * a city as soon as one instance stores a new report for it.
+ */
+public interface SharedWeatherTier {
+
+    Optional<WeatherDto> get(String city);
+
+    void put(String city, WeatherDto weather, Duration timeToLive);
+
+    void evict(String city);
+
+    void clear();
+
+    /**
+     * @return a token to release the lock with, or empty when another instance holds it
+     */
+    Optional<String> tryLock(String city, Duration lease);
+
+    void unlock(String city, String token);
+
+    void publish(CacheInvalidation invalidation);
+
+    void subscribe(Consumer<CacheInvalidation> listener);
+}
@@ -0,0 +1,205 @@
+package com.example.weather.cache;
+
+import com.example.weather.config.WeatherCacheExpiry;
+import com.example.weather.dto.WeatherDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Weather cache with an in-process near cache in front of the {@link SharedWeatherTier}.
+ * <ul>
+ *     <li>A near cache miss is served from the shared tier and copied into the near cache.</li>
+ *     <li>{@link #get(Object, Callable)} loads a city on one instance at a time: the instance holding the shared
+ *     lock loads it, the others wait for the report to show up in the shared tier. A waiter that finds the lock
+ *     released without a report takes the lock and loads the city itself.</li>
+ *     <li>Every put and evict is published, and the other instances drop the city from their near cache.</li>
+ * </ul>
+ * A failing shared tier is logged and skipped, the instance then runs on its near cache alone.
+ */
+public class TwoLevelCache implements Cache {
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCache.class);
+
+    private final Cache nearCache;
+    private final SharedWeatherTier sharedTier;
+    private final WeatherCacheExpiry expiry;
+    private final String nodeId;
+    private final Duration lockLease;
+    private final Duration lockWait;
+    private final Duration pollInterval;
+
+    public TwoLevelCache(Cache nearCache, SharedWeatherTier sharedTier, WeatherCacheExpiry expiry, String nodeId,
+                         Duration lockLease, Duration lockWait, Duration pollInterval) {
+        this.nearCache = nearCache;
+        this.sharedTier = sharedTier;
+        this.expiry = expiry;
+        this.nodeId = nodeId;
+        this.lockLease = lockLease;
+        this.lockWait = lockWait;
+        this.pollInterval = pollInterval;
+        shared(() -> sharedTier.subscribe(this::onInvalidation));
+    }
+
+    @Override
+    public String getName() {
+        return nearCache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return nearCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper nearValue = nearCache.get(key);
+        if (nearValue != null) {
+            return nearValue;
+        }
+        return getShared(key).map(SimpleValueWrapper::new).orElse(null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null || value.get() == null) {
+            return null;
+        }
+        if (type != null && !type.isInstance(value.get())) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value.get());
+        }
+        return (T) value.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+
+        String city = key.toString();
+        long deadline = System.nanoTime() + lockWait.toNanos();
+        while (true) {
+            // an empty token stands for a shared tier that can not be reached, the instance then loads on its own
+            Optional<String> lockToken = shared(() -> sharedTier.tryLock(city, lockLease), Optional.of(""));
+            if (lockToken.isPresent()) {
+                try {
+                    // another instance may have stored the city between the lookup and the lock
+                    Optional<WeatherDto> loaded = getShared(key);
+                    return loaded.isPresent() ? (T) loaded.get() : load(key, valueLoader);
+                } finally {
+                    if (!lockToken.get().isEmpty()) {
+                        shared(() -> sharedTier.unlock(city, lockToken.get()));
+                    }
+                }
+            }
+
+            // the lock is tried again after each poll: a holder whose load failed or was not shared releases it
+            // without storing a report, and one of the waiters takes over instead of waiting out lock-wait
+            Optional<WeatherDto> loadedElsewhere = awaitShared(key);
+            if (loadedElsewhere.isPresent()) {
+                return (T) loadedElsewhere.get();
+            }
+            if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+                logger.warn("Gave up waiting for another instance to load {}, loading it here", city);
+                return load(key, valueLoader);
+            }
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        nearCache.put(key, value);
+        if (value instanceof WeatherDto weather) {
+            Duration timeToLive = Duration.ofNanos(expiry.expireAfterCreate(key, weather, 0));
+            // an outdated report is not shared, and the others keep whatever they have
+            if (timeToLive.isPositive()) {
+                shared(() -> {
+                    sharedTier.put(key.toString(), weather, timeToLive);
+                    sharedTier.publish(new CacheInvalidation(nodeId, key.toString()));
+                });
+            }
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        nearCache.evict(key);
+        shared(() -> {
+            sharedTier.evict(key.toString());
+            sharedTier.publish(new CacheInvalidation(nodeId, key.toString()));
+        });
+    }
+
+    @Override
+    public void clear() {
+        nearCache.clear();
+        shared(() -> {
+            sharedTier.clear();
+            sharedTier.publish(new CacheInvalidation(nodeId, null));
+        });
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.nodeId())) {
+            return;
+        }
+        if (invalidation.isClear()) {
+            nearCache.clear();
+        } else {
+            nearCache.evict(invalidation.city());
+        }
+    }
+
+    private <T> T load(Object key, Callable<T> valueLoader) {
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    private Optional<WeatherDto> awaitShared(Object key) {
+        try {
+            Thread.sleep(pollInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+        return getShared(key);
+    }
+
+    private Optional<WeatherDto> getShared(Object key) {
+        Optional<WeatherDto> weather = shared(() -> sharedTier.get(key.toString()), Optional.empty());
+        weather.ifPresent(value -> nearCache.put(key, value));
+        return weather;
+    }
+
+    private void shared(Runnable call) {
+        shared(() -> {
+            call.run();
+            return null;
+        }, null);
+    }
+
+    private <T> T shared(Supplier<T> call, T fallback) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            logger.warn("Shared cache tier is not available: {}", e.getMessage());
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.weather.cache;
+
+import com.example.weather.config.WeatherCacheExpiry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Puts a {@link TwoLevelCache} in front of each cache of the near cache manager.
+ * Each instance gets its own node id, so it can skip its own invalidations.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager nearCacheManager;
+    private final SharedWeatherTier sharedTier;
+    private final WeatherCacheExpiry expiry;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Duration lockLease;
+    private final Duration lockWait;
+    private final Duration pollInterval;
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager nearCacheManager, SharedWeatherTier sharedTier, WeatherCacheExpiry expiry,
+                                Duration lockLease, Duration lockWait, Duration pollInterval) {
+        this.nearCacheManager = nearCacheManager;
+        this.sharedTier = sharedTier;
+        this.expiry = expiry;
+        this.lockLease = lockLease;
+        this.lockWait = lockWait;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache nearCache = nearCacheManager.getCache(name);
+        if (nearCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, key ->
+                new TwoLevelCache(nearCache, sharedTier, expiry, nodeId, lockLease, lockWait, pollInterval));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return nearCacheManager.getCacheNames();
+    }
+}
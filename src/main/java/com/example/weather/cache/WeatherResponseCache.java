@@ -0,0 +1,96 @@
+package com.example.weather.cache;
+
+import com.example.weather.dto.WeatherDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Keeps the encoded JSON body and the ETag of each weather report, so a report that is served again and again
+ * is serialized once. Entries are keyed by the report itself: a new report of a city is a new entry, and the
+ * previous one expires with the report. Hits and misses are published as cache.gets{cache=weatherResponses}.
+ */
+@Component
+public class WeatherResponseCache {
+    public static final String RESPONSE_CACHE_NAME = "weatherResponses";
+
+    private final Cache<WeatherDto, EncodedWeather> responses;
+    private final ObjectWriter writer;
+    private final Duration freshFor;
+    private final Clock clock;
+
+    public WeatherResponseCache(ObjectMapper objectMapper,
+                                Clock clock,
+                                MeterRegistry meterRegistry,
+                                @Value("${weather-stack.api-call-limit}") long apiCallLimitMinutes,
+                                @Value("${weather-stack.cache-max-size}") long maxSize) {
+        this.writer = objectMapper.writerFor(WeatherDto.class);
+        this.clock = clock;
+        this.freshFor = Duration.ofMinutes(apiCallLimitMinutes);
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(freshFor)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, RESPONSE_CACHE_NAME);
+    }
+
+    public EncodedWeather encode(WeatherDto weather) {
+        return responses.get(weather, this::serialize);
+    }
+
+    /**
+     * How long a client may reuse the report: the rest of its api-call-limit window, zero once it is outdated.
+     */
+    public Duration maxAge(WeatherDto weather) {
+        Duration left = Duration.between(LocalDateTime.now(clock), weather.updatedTime().plus(freshFor));
+        return left.isNegative() ? Duration.ZERO : left;
+    }
+
+    private EncodedWeather serialize(WeatherDto weather) {
+        try {
+            return new EncodedWeather(writer.writeValueAsBytes(weather), eTag(weather.updatedTime()));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String eTag(LocalDateTime updatedTime) {
+        Duration sinceEpoch = Duration.ofSeconds(updatedTime.toEpochSecond(ZoneOffset.UTC), updatedTime.getNano());
+        return "\"" + Long.toHexString(sinceEpoch.toMillis()) + "\"";
+    }
+
+    public record EncodedWeather(byte[] body, String eTag) {
+
+        /**
+         * Weak comparison against an If-None-Match header, which may list several entity tags or be "*".
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
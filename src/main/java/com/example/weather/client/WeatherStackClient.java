@@ -0,0 +1,127 @@
+package com.example.weather.client;
+
+import com.example.weather.exception.RestServiceException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.net.URIBuilder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static com.example.weather.constants.Constants.API_KEY;
+import static com.example.weather.constants.Constants.WEATHER_STACK_API_BASE_URL;
+
+/**
+ * Non-blocking weatherstack client on top of the pooled async http client.
+ * Every request goes through a circuit breaker, a time limiter and a bulkhead, in this order. A request over the
+ * bulkhead's in-flight cap, or made while the circuit is open, fails right away instead of queueing.
+ */
+@Component
+public class WeatherStackClient implements DisposableBean {
+    private static final String SERVICE_NAME = "weatherstack";
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final TimeLimiter timeLimiter;
+    private final ScheduledExecutorService timeoutScheduler;
+
+    public WeatherStackClient(CloseableHttpAsyncClient weatherStackHttpClient,
+                              CircuitBreaker weatherStackCircuitBreaker,
+                              Bulkhead weatherStackBulkhead,
+                              TimeLimiter weatherStackTimeLimiter,
+                              MeterRegistry meterRegistry) {
+        this.httpClient = weatherStackHttpClient;
+        this.circuitBreaker = weatherStackCircuitBreaker;
+        this.bulkhead = weatherStackBulkhead;
+        this.timeLimiter = weatherStackTimeLimiter;
+        // only completes timed out futures, the http client's own threads do the io. Not a bean, so the
+        // TaskScheduler of the application is still auto-configured
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("weather-stack-timeout").daemon().factory());
+
+        Gauge.builder("weather.upstream.inflight", bulkhead,
+                        permits -> permits.getBulkheadConfig().getMaxConcurrentCalls() - permits.getMetrics().getAvailableConcurrentCalls())
+                .description("Weatherstack requests in flight")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<byte[]> getCurrentWeather(String query) {
+        Supplier<CompletionStage<byte[]>> request = Bulkhead.decorateCompletionStage(bulkhead, () -> execute(query));
+        request = timeLimiter.decorateCompletionStage(timeoutScheduler, request);
+        request = CircuitBreaker.decorateCompletionStage(circuitBreaker, request);
+
+        return request.get().toCompletableFuture().exceptionallyCompose(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                cause = new RestServiceException(SERVICE_NAME, HttpStatus.GATEWAY_TIMEOUT, "No response within " + timeLimiter.getTimeLimiterConfig().getTimeoutDuration());
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    private CompletableFuture<byte[]> execute(String query) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        try {
+            SimpleHttpRequest request = SimpleRequestBuilder.get(getCurrentWeatherUri(query)).build();
+            httpClient.execute(SimpleRequestProducer.create(request), SimpleResponseConsumer.create(), new FutureCallback<>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    if (response.getCode() >= 400) {
+                        result.completeExceptionally(new RestServiceException(SERVICE_NAME, HttpStatus.resolve(response.getCode()), response.getReasonPhrase()));
+                    } else {
+                        result.complete(response.getBodyBytes());
+                    }
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    result.completeExceptionally(new RestServiceException(SERVICE_NAME, HttpStatus.BAD_GATEWAY, ex.toString()));
+                }
+
+                @Override
+                public void cancelled() {
+                    result.cancel(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private URI getCurrentWeatherUri(String query) {
+        try {
+            return new URIBuilder(WEATHER_STACK_API_BASE_URL)
+                    .addParameter("access_key", API_KEY)
+                    .addParameter("query", query)
+                    .build();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Invalid weather stack api url: " + WEATHER_STACK_API_BASE_URL, e);
+        }
+    }
+}
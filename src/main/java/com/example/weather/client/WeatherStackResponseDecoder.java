@@ -0,0 +1,132 @@
+package com.example.weather.client;
+
+import com.example.weather.dto.WeatherReading;
+import com.example.weather.exception.Error;
+import com.example.weather.exception.ErrorResponse;
+import com.example.weather.exception.WeatherStackApiException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Decodes a weatherstack response in a single pass with the Jackson streaming api.
+ * The first field tells a success payload from an error payload, and only the fields
+ * kept in {@link WeatherReading} are read, everything else is skipped.
+ */
+@Component
+public class WeatherStackResponseDecoder {
+
+    private final JsonFactory jsonFactory;
+
+    public WeatherStackResponseDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public WeatherReading decode(byte[] responseBody) {
+        try (JsonParser parser = jsonFactory.createParser(responseBody)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Weather stack response is not a json object");
+            }
+            if (parser.nextToken() == JsonToken.FIELD_NAME
+                    && ("success".equals(parser.currentName()) || "error".equals(parser.currentName()))) {
+                throw new WeatherStackApiException(readError(parser));
+            }
+            return readReading(parser);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private WeatherReading readReading(JsonParser parser) throws IOException {
+        String cityName = null;
+        String country = null;
+        String localTime = null;
+        Integer temperature = null;
+        Double latitude = null;
+        Double longitude = null;
+
+        for (JsonToken token = parser.currentToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("location".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String locationField = parser.currentName();
+                    parser.nextToken();
+                    switch (locationField) {
+                        case "name" -> cityName = parser.getValueAsString();
+                        case "country" -> country = parser.getValueAsString();
+                        case "localtime" -> localTime = parser.getValueAsString();
+                        case "lat" -> latitude = readCoordinate(parser);
+                        case "lon" -> longitude = readCoordinate(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+            } else if ("current".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String currentField = parser.currentName();
+                    parser.nextToken();
+                    if ("temperature".equals(currentField) && parser.currentToken() != JsonToken.VALUE_NULL) {
+                        temperature = parser.getValueAsInt();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (cityName == null || localTime == null) {
+            throw new IOException("Weather stack response has no location");
+        }
+        return new WeatherReading(cityName, country, temperature, localTime, latitude, longitude);
+    }
+
+    // weatherstack sends coordinates as strings ("36.900"), a missing or unparsable one is left out
+    private static Double readCoordinate(JsonParser parser) throws IOException {
+        String value = parser.getValueAsString();
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private ErrorResponse readError(JsonParser parser) throws IOException {
+        String success = null;
+        Error error = null;
+
+        for (JsonToken token = parser.currentToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("success".equals(field)) {
+                success = parser.getValueAsString();
+            } else if ("error".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                String code = null;
+                String type = null;
+                String info = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String errorField = parser.currentName();
+                    parser.nextToken();
+                    switch (errorField) {
+                        case "code" -> code = parser.getValueAsString();
+                        case "type" -> type = parser.getValueAsString();
+                        case "info" -> info = parser.getValueAsString();
+                        default -> parser.skipChildren();
+                    }
+                }
+                error = new Error(code, type, info);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new ErrorResponse(success, error);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.weather.config;
+
+import com.example.weather.cache.LocalSharedWeatherTier;
+import com.example.weather.cache.RedisSharedWeatherTier;
+import com.example.weather.cache.SharedWeatherTier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Clock;
+
+/**
+ * Selects the shared cache tier with weather-stack.shared-cache.type: "local" keeps it in process
+ * (a single instance, tests), "redis" shares it between all instances.
+ */
+@Configuration
+public class SharedCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "weather-stack.shared-cache.type", havingValue = "local", matchIfMissing = true)
+    public SharedWeatherTier localSharedWeatherTier(Clock clock, @Value("${weather-stack.cache-max-size}") int maxSize) {
+        return new LocalSharedWeatherTier(clock, maxSize);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather-stack.shared-cache.type", havingValue = "redis")
+    public RedisMessageListenerContainer weatherInvalidationListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        return listenerContainer;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather-stack.shared-cache.type", havingValue = "redis")
+    public SharedWeatherTier redisSharedWeatherTier(StringRedisTemplate stringRedisTemplate,
+                                                    RedisMessageListenerContainer weatherInvalidationListenerContainer,
+                                                    ObjectMapper objectMapper) {
+        return new RedisSharedWeatherTier(stringRedisTemplate, weatherInvalidationListenerContainer, objectMapper);
+    }
+}
@@ -1,17 +1,58 @@
 package com.example.weather.config;
 
+import com.example.weather.cache.SharedWeatherTier;
+import com.example.weather.cache.TwoLevelCacheManager;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @EnableCaching
 public class SpringCachingConfig {
 
     @Bean
-    public CacheManager cacheManager(){
-        return new ConcurrentMapCacheManager("weathers"); //Hashmap
+    public WeatherCacheExpiry weatherCacheExpiry(@Value("${weather-stack.api-call-limit}") long apiCallLimit, Clock clock) {
+        return new WeatherCacheExpiry(apiCallLimit, clock);
+    }
+
+    @Bean
+    public Caffeine<Object, Object> caffeineConfig(@Value("${weather-stack.cache-max-size}") long maximumSize,
+                                                   WeatherCacheExpiry weatherCacheExpiry) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(weatherCacheExpiry)
+                .recordStats();
+    }
+
+    // The in-process near cache, its caffeine stats are bound to micrometer as cacheManager=nearCacheManager
+    @Bean
+    public CaffeineCacheManager nearCacheManager(Caffeine<Object, Object> caffeineConfig,
+                                                 @Value("${weather-stack.cache-name}") String weatherCacheName) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(caffeineConfig);
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCacheNames(List.of(weatherCacheName));
+        return cacheManager;
+    }
+
+    @Bean
+    @Primary
+    public CacheManager cacheManager(CaffeineCacheManager nearCacheManager,
+                                     SharedWeatherTier sharedWeatherTier,
+                                     WeatherCacheExpiry weatherCacheExpiry,
+                                     @Value("${weather-stack.shared-cache.lock-lease}") long lockLeaseMillis,
+                                     @Value("${weather-stack.shared-cache.lock-wait}") long lockWaitMillis,
+                                     @Value("${weather-stack.shared-cache.poll-interval}") long pollIntervalMillis) {
+        return new TwoLevelCacheManager(nearCacheManager, sharedWeatherTier, weatherCacheExpiry,
+                Duration.ofMillis(lockLeaseMillis), Duration.ofMillis(lockWaitMillis), Duration.ofMillis(pollIntervalMillis));
     }
 }
@@ -0,0 +1,38 @@
+package com.example.weather.config;
+
+import com.example.weather.quota.LocalUpstreamQuotaStore;
+import com.example.weather.quota.RedisUpstreamQuotaStore;
+import com.example.weather.quota.UpstreamQuotaStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Clock;
+
+/**
+ * Selects where the weatherstack token bucket lives with weather-stack.quota.store: "local" bounds
+ * the calls of one instance, "redis" bounds the calls of all instances together.
+ */
+@Configuration
+public class UpstreamQuotaConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "weather-stack.quota.store", havingValue = "local", matchIfMissing = true)
+    public UpstreamQuotaStore localUpstreamQuotaStore(@Value("${weather-stack.quota.capacity}") long capacity,
+                                                      @Value("${weather-stack.quota.refill-amount}") long refillAmount,
+                                                      @Value("${weather-stack.quota.refill-period}") long refillPeriodMillis,
+                                                      Clock clock) {
+        return new LocalUpstreamQuotaStore(capacity, (double) refillAmount / refillPeriodMillis, clock);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "weather-stack.quota.store", havingValue = "redis")
+    public UpstreamQuotaStore redisUpstreamQuotaStore(StringRedisTemplate stringRedisTemplate,
+                                                      @Value("${weather-stack.quota.capacity}") long capacity,
+                                                      @Value("${weather-stack.quota.refill-amount}") long refillAmount,
+                                                      @Value("${weather-stack.quota.refill-period}") long refillPeriodMillis) {
+        return new RedisUpstreamQuotaStore(stringRedisTemplate, capacity, (double) refillAmount / refillPeriodMillis);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.weather.config;
+
+import com.example.weather.dto.WeatherDto;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Expires each cached weather report when its api call limit window is over,
+ * so an entry lives exactly as long as the database copy is considered up-to-date.
+ */
+public class WeatherCacheExpiry implements Expiry<Object, Object> {
+
+    private final Duration apiCallLimit;
+    private final Clock clock;
+
+    public WeatherCacheExpiry(long apiCallLimitMinutes, Clock clock) {
+        this.apiCallLimit = Duration.ofMinutes(apiCallLimitMinutes);
+        this.clock = clock;
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        if (!(value instanceof WeatherDto weather) || weather.updatedTime() == null) {
+            return apiCallLimit.toNanos();
+        }
+        Duration remaining = Duration.between(LocalDateTime.now(clock), weather.updatedTime().plus(apiCallLimit));
+        return Math.max(0, remaining.toNanos());
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
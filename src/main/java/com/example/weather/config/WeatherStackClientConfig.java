@@ -0,0 +1,120 @@
+package com.example.weather.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * The pooled http client for weatherstack and the resilience4j instances around its calls. The circuit breaker,
+ * bulkhead and time limiter are configured under resilience4j.*.instances.weatherstack, their metrics are
+ * published by the resilience4j auto-configuration as resilience4j_* meters.
+ */
+@Configuration
+public class WeatherStackClientConfig {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherStackClientConfig.class);
+    private static final String WEATHER_STACK_INSTANCE = "weatherstack";
+
+    @Bean
+    public PoolingAsyncClientConnectionManager weatherStackConnectionManager(@Value("${weather-stack.client.max-in-flight}") int maxConnections,
+                                                                             @Value("${weather-stack.client.connect-timeout}") long connectTimeout,
+                                                                             MeterRegistry meterRegistry) {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .build())
+                .setDefaultTlsConfig(TlsConfig.custom()
+                        .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_1)
+                        .build())
+                .build();
+
+        registerPoolGauge(meterRegistry, connectionManager, "leased", PoolStats::getLeased);
+        registerPoolGauge(meterRegistry, connectionManager, "pending", PoolStats::getPending);
+        registerPoolGauge(meterRegistry, connectionManager, "available", PoolStats::getAvailable);
+        registerPoolGauge(meterRegistry, connectionManager, "max", PoolStats::getMax);
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpAsyncClient weatherStackHttpClient(PoolingAsyncClientConnectionManager weatherStackConnectionManager,
+                                                           @Value("${weather-stack.client.connect-timeout}") long connectTimeout,
+                                                           @Value("${weather-stack.client.response-timeout}") long responseTimeout,
+                                                           @Value("${weather-stack.client.keep-alive}") long keepAlive) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeout))
+                .build();
+
+        CloseableHttpAsyncClient httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(weatherStackConnectionManager)
+                .setIOReactorConfig(IOReactorConfig.custom().setSoKeepAlive(true).build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAlive))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive))
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        httpClient.start();
+        return httpClient;
+    }
+
+    @Bean
+    public CircuitBreaker weatherStackCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(WEATHER_STACK_INSTANCE);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            logger.warn("Weather stack circuit breaker moved from {} to {}",
+                    event.getStateTransition().getFromState(), event.getStateTransition().getToState());
+            Counter.builder("weather.upstream.circuit.transitions")
+                    .description("State transitions of the weatherstack circuit breaker")
+                    .tag("from", event.getStateTransition().getFromState().name())
+                    .tag("to", event.getStateTransition().getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+        return circuitBreaker;
+    }
+
+    @Bean
+    public Bulkhead weatherStackBulkhead(BulkheadRegistry bulkheadRegistry) {
+        return bulkheadRegistry.bulkhead(WEATHER_STACK_INSTANCE);
+    }
+
+    @Bean
+    public TimeLimiter weatherStackTimeLimiter(TimeLimiterRegistry timeLimiterRegistry) {
+        return timeLimiterRegistry.timeLimiter(WEATHER_STACK_INSTANCE);
+    }
+
+    private static void registerPoolGauge(MeterRegistry meterRegistry,
+                                          PoolingAsyncClientConnectionManager connectionManager,
+                                          String state,
+                                          ToIntFunction<PoolStats> value) {
+        Gauge.builder("weather.upstream.pool.connections", connectionManager, manager -> value.applyAsInt(manager.getTotalStats()))
+                .description("Connections of the weatherstack client pool")
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+}
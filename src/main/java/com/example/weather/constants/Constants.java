@@ -6,12 +6,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class Constants {
     public static String WEATHER_STACK_API_BASE_URL;
-    public static final String WEATHER_STACK_API_ACCESS_KEY_PARAM = "?access_key=";
-    public static final String WEATHER_STACK_API_QUERY_PARAM = "&query=";
 
     public static String API_KEY;
     public static Integer API_CALL_LIMIT;
     public static String WEATHER_CACHE_NAME;
+    public static Boolean STALE_WHILE_REVALIDATE;
+    public static Integer BATCH_MAX_CONCURRENCY;
 
     @Value("${weather-stack.api-url}")
     public void setWeatherStackApiBaseUrl(String apiUrl) {
@@ -32,4 +32,14 @@ public class Constants {
     public void setApiCallLimit(Integer apiCallLimit) {
         API_CALL_LIMIT = apiCallLimit;
     }
+
+    @Value("${weather-stack.stale-while-revalidate}")
+    public void setStaleWhileRevalidate(Boolean staleWhileRevalidate) {
+        STALE_WHILE_REVALIDATE = staleWhileRevalidate;
+    }
+
+    @Value("${weather-stack.batch.max-concurrency}")
+    public void setBatchMaxConcurrency(Integer batchMaxConcurrency) {
+        BATCH_MAX_CONCURRENCY = batchMaxConcurrency;
+    }
 }
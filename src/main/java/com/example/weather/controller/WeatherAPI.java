@@ -1,9 +1,10 @@
 package com.example.weather.controller;
 
+import com.example.weather.cache.WeatherResponseCache;
 import com.example.weather.controller.validation.CityNameConstraint;
+import com.example.weather.dto.BatchWeatherResponse;
 import com.example.weather.dto.WeatherDto;
 import com.example.weather.service.WeatherService;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -11,14 +12,20 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/v1/api/weather")
 @Validated
@@ -26,25 +33,34 @@ import org.springframework.web.bind.annotation.RestController;
 public class WeatherAPI {
 
     private final WeatherService weatherService;
+    private final WeatherResponseCache responseCache;
 
-    public WeatherAPI(WeatherService weatherService) {
+    public WeatherAPI(WeatherService weatherService, WeatherResponseCache responseCache) {
         this.weatherService = weatherService;
+        this.responseCache = responseCache;
     }
 
     //Swagger-ui configuration
     @Operation(
             method = "GET",
             summary = "search the current weather report of the city",
-            description = "search the current weather report of the city name filter. The api has the rate limiting. 10 request per minute",
+            description = "search the current weather report of the city name filter. When weatherstack is unavailable or its quota is used up, "
+                    + "the latest known report of the city is served as stale",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
-                            description = "The current weather report of the city",
+                            description = "The current weather report of the city with its ETag. Cache-Control max-age is the time left until "
+                                    + "the report gets outdated. A stale report has the Age header with its age in seconds",
                             content = @Content(
                                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     array = @ArraySchema(schema = @Schema(implementation = WeatherDto.class))
                             )
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "The report matches the If-None-Match header, the client's copy is still the current report",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "City name is wrong. Re-try with a valid city name",
@@ -52,7 +68,12 @@ public class WeatherAPI {
                     ),
                     @ApiResponse(
                             responseCode = "429",
-                            description = "Rate limit exceeded. Please try your request again later!",
+                            description = "Weather stack quota is used up and there is no older report of the city to serve. See Retry-After",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "Weather stack is unavailable (circuit open or too many calls in flight) and there is no older report of the city to serve",
                             content = @Content(schema = @Schema(hidden = true))
                     ),
                     @ApiResponse(
@@ -64,8 +85,36 @@ public class WeatherAPI {
     )
 
     @GetMapping("/{city}")
-    @RateLimiter(name = "limit")
-    public ResponseEntity<WeatherDto> getWeatherByCityName(@PathVariable("city") @CityNameConstraint @NotBlank String city) {
-        return ResponseEntity.ok(this.weatherService.getWeather(city));
+    public ResponseEntity<byte[]> getWeatherByCityName(@PathVariable("city") @CityNameConstraint @NotBlank String city,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return WeatherResponses.of(this.weatherService.getWeather(city), ifNoneMatch, this.weatherService, this.responseCache);
+    }
+
+    @Operation(
+            method = "GET",
+            summary = "search the current weather reports of several cities",
+            description = "search the current weather reports of up to 50 cities in one request. Each city has its own status: "
+                    + "CACHE, DATABASE, STALE, UPSTREAM or ERROR. Cities that need weatherstack when its quota is used up "
+                    + "or it is unavailable are STALE if an older report exists, otherwise ERROR",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "The current weather reports of the cities",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BatchWeatherResponse.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "A city name is not valid or the city list is empty or too long",
+                            content = @Content(schema = @Schema(hidden = true))
+                    )
+            }
+    )
+
+    @GetMapping
+    public ResponseEntity<BatchWeatherResponse> getWeatherByCityNames(@RequestParam("cities") @Size(min = 1, max = 50) List<@CityNameConstraint @NotBlank String> cities) {
+        return ResponseEntity.ok(new BatchWeatherResponse(this.weatherService.getWeathers(cities)));
     }
 }
@@ -0,0 +1,67 @@
+package com.example.weather.controller;
+
+import com.example.weather.controller.validation.CityNameConstraint;
+import com.example.weather.dto.WeatherHistoryResponse;
+import com.example.weather.service.WeatherHistoryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/v1/api/weather")
+@Validated
+@Tag(name = "Weather History API v1", description = "Weather History API to search the temperature history of the city")
+public class WeatherHistoryAPI {
+
+    private final WeatherHistoryService weatherHistoryService;
+
+    public WeatherHistoryAPI(WeatherHistoryService weatherHistoryService) {
+        this.weatherHistoryService = weatherHistoryService;
+    }
+
+    @Operation(
+            method = "GET",
+            summary = "search the temperature history of the city",
+            description = "search the temperatures of the city between from (inclusive) and to (exclusive), the last day by default. "
+                    + "The range is split into buckets of bucketMinutes with the min, max and average temperature of each. Empty buckets are left out",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "The temperature history of the city",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = WeatherHistoryResponse.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "City name is not valid, from is not before to or the range has too many buckets",
+                            content = @Content(schema = @Schema(hidden = true))
+                    )
+            }
+    )
+
+    @GetMapping("/{city}/history")
+    public ResponseEntity<WeatherHistoryResponse> getWeatherHistory(@PathVariable("city") @CityNameConstraint @NotBlank String city,
+                                                                     @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                     @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                     @RequestParam(value = "bucketMinutes", defaultValue = "60") @Min(1) @Max(525600) long bucketMinutes) {
+        return ResponseEntity.ok(this.weatherHistoryService.getHistory(city, from, to, bucketMinutes));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.weather.controller;
+
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.service.WeatherLocationService;
+import com.example.weather.service.WeatherService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/api/weather")
+@Validated
+@Tag(name = "Weather Location API v1", description = "Weather Location API to search the current weather report at coordinates")
+public class WeatherLocationAPI {
+
+    private final WeatherLocationService weatherLocationService;
+    private final WeatherService weatherService;
+    private final WeatherResponseCache responseCache;
+
+    public WeatherLocationAPI(WeatherLocationService weatherLocationService, WeatherService weatherService, WeatherResponseCache responseCache) {
+        this.weatherLocationService = weatherLocationService;
+        this.weatherService = weatherService;
+        this.responseCache = responseCache;
+    }
+
+    @Operation(
+            method = "GET",
+            summary = "search the current weather report at coordinates",
+            description = "search the current weather report of the city nearest to lat, lon. A city with a report within "
+                    + "weather-stack.location.radius-km answers without a weatherstack call while its report is up-to-date",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "The current weather report of the nearest city with its ETag and Cache-Control max-age",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = WeatherDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "The report matches the If-None-Match header",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "lat is not in [-90, 90] or lon is not in [-180, 180]",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Weather stack quota is used up and there is no older report to serve. See Retry-After",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "Weather stack is unavailable and there is no older report to serve",
+                            content = @Content(schema = @Schema(hidden = true))
+                    )
+            }
+    )
+
+    @GetMapping("/coordinates")
+    public ResponseEntity<byte[]> getWeatherByCoordinates(@RequestParam("lat") @DecimalMin("-90") @DecimalMax("90") double latitude,
+                                                          @RequestParam("lon") @DecimalMin("-180") @DecimalMax("180") double longitude,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        WeatherDto weather = this.weatherLocationService.getWeather(latitude, longitude);
+        return WeatherResponses.of(weather, ifNoneMatch, this.weatherService, this.responseCache);
+    }
+}
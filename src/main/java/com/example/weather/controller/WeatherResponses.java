@@ -0,0 +1,36 @@
+package com.example.weather.controller;
+
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.cache.WeatherResponseCache.EncodedWeather;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.service.WeatherService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The response of a single city report, shared by the v1 and v2 endpoints.
+ */
+final class WeatherResponses {
+
+    private WeatherResponses() {
+    }
+
+    static ResponseEntity<byte[]> of(WeatherDto weather, String ifNoneMatch, WeatherService weatherService, WeatherResponseCache responseCache) {
+        // the body is encoded once per report, a repeated request only looks it up
+        EncodedWeather encoded = responseCache.encode(weather);
+        boolean notModified = encoded.matches(ifNoneMatch);
+        ResponseEntity.BodyBuilder response = (notModified ? ResponseEntity.status(HttpStatus.NOT_MODIFIED) : ResponseEntity.ok())
+                .eTag(encoded.eTag())
+                .cacheControl(CacheControl.maxAge(responseCache.maxAge(weather)));
+        weatherService.getStaleAge(weather).ifPresent(age -> response
+                .header(HttpHeaders.AGE, String.valueOf(age.toSeconds()))
+                .header(HttpHeaders.WARNING, "110 - \"Response is Stale\""));
+        if (notModified) {
+            return response.build();
+        }
+        return response.contentType(MediaType.APPLICATION_JSON).body(encoded.body());
+    }
+}
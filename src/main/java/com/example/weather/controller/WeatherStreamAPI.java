@@ -0,0 +1,67 @@
+package com.example.weather.controller;
+
+import com.example.weather.controller.validation.CityNameConstraint;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.stream.WeatherBroadcaster;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/v1/api/weather")
+@Validated
+@Tag(name = "Weather Stream API v1", description = "Weather Stream API to receive the new weather reports of the cities as they are fetched")
+public class WeatherStreamAPI {
+
+    private final WeatherBroadcaster weatherBroadcaster;
+
+    public WeatherStreamAPI(WeatherBroadcaster weatherBroadcaster) {
+        this.weatherBroadcaster = weatherBroadcaster;
+    }
+
+    @Operation(
+            method = "GET",
+            summary = "subscribe to the weather reports of several cities",
+            description = "opens a Server-Sent Events stream for up to 50 cities. The current report of each city is sent first, "
+                    + "then a weather event for every new report. A city that can not be resolved gets an error event. "
+                    + "A client that does not read its events fast enough is disconnected",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "weather events with the report of a city, error events with the city and its error",
+                            content = @Content(
+                                    mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                                    schema = @Schema(implementation = WeatherDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "A city name is not valid or the city list is empty or too long",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "The instance has as many open streams as it allows",
+                            content = @Content(schema = @Schema(hidden = true))
+                    )
+            }
+    )
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam("cities") @Size(min = 1, max = 50) List<@CityNameConstraint @NotBlank String> cities) {
+        return this.weatherBroadcaster.subscribe(cities);
+    }
+}
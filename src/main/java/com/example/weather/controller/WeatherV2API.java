@@ -0,0 +1,81 @@
+package com.example.weather.controller;
+
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.controller.validation.CityNameConstraint;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.service.WeatherService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.NotBlank;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The v1 lookup as an async request: the servlet thread is released while weatherstack answers,
+ * so a slow upstream holds an open connection and a pending future instead of a thread.
+ */
+@RestController
+@RequestMapping("/v2/api/weather")
+@Validated
+@Tag(name = "Weather Service API v2", description = "Weather Service API to search the current weather report of the city without holding a request thread")
+public class WeatherV2API {
+
+    private final WeatherService weatherService;
+    private final WeatherResponseCache responseCache;
+
+    public WeatherV2API(WeatherService weatherService, WeatherResponseCache responseCache) {
+        this.weatherService = weatherService;
+        this.responseCache = responseCache;
+    }
+
+    @Operation(
+            method = "GET",
+            summary = "search the current weather report of the city",
+            description = "same as /v1/api/weather/{city}, answered asynchronously. The request does not hold a server thread while "
+                    + "weatherstack is called",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "The current weather report of the city with its ETag and Cache-Control max-age",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = WeatherDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "The report matches the If-None-Match header",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Weather stack quota is used up and there is no older report of the city to serve. See Retry-After",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "Weather stack is unavailable and there is no older report of the city to serve",
+                            content = @Content(schema = @Schema(hidden = true))
+                    )
+            }
+    )
+
+    @GetMapping("/{city}")
+    public CompletableFuture<ResponseEntity<byte[]>> getWeatherByCityName(@PathVariable("city") @CityNameConstraint @NotBlank String city,
+                                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return this.weatherService.getWeatherAsync(city)
+                .thenApply(weather -> WeatherResponses.of(weather, ifNoneMatch, this.weatherService, this.responseCache));
+    }
+}
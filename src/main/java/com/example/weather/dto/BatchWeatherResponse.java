@@ -0,0 +1,7 @@
+package com.example.weather.dto;
+
+import java.util.List;
+
+public record BatchWeatherResponse(
+        List<BatchWeatherResult> results
+) { }
@@ -0,0 +1,28 @@
+package com.example.weather.dto;
+
+public record BatchWeatherResult(
+        String city,
+        Status status,
+        WeatherDto weather,
+        String error
+) {
+    public enum Status {
+        CACHE,
+        DATABASE,
+        STALE,
+        UPSTREAM,
+        ERROR
+    }
+
+    public static BatchWeatherResult of(String city, Status status, WeatherDto weather) {
+        return new BatchWeatherResult(city, status, weather, null);
+    }
+
+    public static BatchWeatherResult error(String city, String error) {
+        return new BatchWeatherResult(city, Status.ERROR, null, error);
+    }
+
+    public BatchWeatherResult withCity(String city) {
+        return city.equals(this.city) ? this : new BatchWeatherResult(city, status, weather, error);
+    }
+}
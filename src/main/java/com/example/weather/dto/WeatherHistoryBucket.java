@@ -0,0 +1,15 @@
+package com.example.weather.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+public record WeatherHistoryBucket(
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm")
+        LocalDateTime start,
+        int minTemperature,
+        int maxTemperature,
+        double averageTemperature,
+        int samples
+) {
+}
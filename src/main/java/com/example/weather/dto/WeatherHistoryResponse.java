@@ -0,0 +1,23 @@
+package com.example.weather.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record WeatherHistoryResponse(
+        String city,
+        String cityName,
+        String country,
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm")
+        LocalDateTime from,
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm")
+        LocalDateTime to,
+        long bucketMinutes,
+        Integer minTemperature,
+        Integer maxTemperature,
+        Double averageTemperature,
+        int samples,
+        List<WeatherHistoryBucket> buckets
+) {
+}
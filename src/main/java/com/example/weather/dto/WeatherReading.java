@@ -0,0 +1,13 @@
+package com.example.weather.dto;
+
+/**
+ * The part of a weatherstack response the service keeps, decoded without materializing {@link WeatherResponse}.
+ */
+public record WeatherReading(
+        String cityName,
+        String country,
+        Integer temperature,
+        String localTime,
+        Double latitude,
+        Double longitude
+) { }
@@ -0,0 +1,18 @@
+package com.example.weather.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Temperatures of a city at one point of its history: a single report, or an hourly rollup of several reports.
+ */
+public record WeatherSeriesPoint(
+        String requestedCityName,
+        String cityName,
+        String country,
+        LocalDateTime time,
+        Integer minTemperature,
+        Integer maxTemperature,
+        Double temperatureSum,
+        Integer samples
+) {
+}
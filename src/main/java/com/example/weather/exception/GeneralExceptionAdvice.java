@@ -1,6 +1,7 @@
 package com.example.weather.exception;
 
-import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.constraints.NotNull;
 import org.slf4j.Logger;
@@ -44,9 +45,29 @@ public class GeneralExceptionAdvice extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(exception.getMessage(),HttpStatus.BAD_REQUEST);
     }
 
-    @ExceptionHandler(RequestNotPermitted.class)
-    public ResponseEntity<String> handle(RequestNotPermitted exception){
-        return new ResponseEntity<>("Rate limit exceeded. Please try your request again later!",HttpStatus.TOO_MANY_REQUESTS);
+    @ExceptionHandler(InvalidHistoryQueryException.class)
+    public ResponseEntity<String> handle(InvalidHistoryQueryException exception){
+        return new ResponseEntity<>(exception.getMessage(),HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(UpstreamQuotaExceededException.class)
+    public ResponseEntity<String> handle(UpstreamQuotaExceededException exception){
+        long retryAfterSeconds = Math.max(1, (exception.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body("Weather stack quota is used up. Please try your request again later!");
+    }
+
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<String> handleUnavailableWeatherStack(RuntimeException exception){
+        logger.warn("Weather stack is unavailable: {}", exception.getMessage());
+        return new ResponseEntity<>("Weather stack is unavailable. Please try your request again later!", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(TooManySubscribersException.class)
+    public ResponseEntity<String> handle(TooManySubscribersException exception){
+        logger.warn(exception.getMessage());
+        return new ResponseEntity<>("Too many open weather streams. Please try your request again later!", HttpStatus.SERVICE_UNAVAILABLE);
     }
 
     @ExceptionHandler(RuntimeException.class)
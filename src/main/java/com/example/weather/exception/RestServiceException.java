@@ -8,7 +8,7 @@ public class RestServiceException extends RuntimeException{
     private String error;
 
     public RestServiceException(String serviceName, HttpStatus statusCode, String error) {
-        super();
+        super(String.format("%s responded %s: %s", serviceName, statusCode, error));
         this.serviceName = serviceName;
         this.statusCode = statusCode;
         this.error = error;
@@ -0,0 +1,8 @@
+package com.example.weather.exception;
+
+public class TooManySubscribersException extends RuntimeException {
+
+    public TooManySubscribersException(int maxSubscribers) {
+        super(String.format("There are already %d weather stream subscribers", maxSubscribers));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.weather.exception;
+
+import java.time.Duration;
+
+public class UpstreamQuotaExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public UpstreamQuotaExceededException(String city, Duration retryAfter) {
+        super(String.format("Weather stack quota is used up, %s can not be fetched", city));
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
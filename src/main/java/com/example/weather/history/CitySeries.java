@@ -0,0 +1,212 @@
+package com.example.weather.history;
+
+import com.example.weather.dto.WeatherHistoryBucket;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Temperature history of one city in parallel primitive arrays sorted by time, 28 bytes a point.
+ * A point is a single report (samples 1) or an hourly rollup, so both aggregate the same way.
+ */
+final class CitySeries {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long HOUR_SECONDS = 3600;
+
+    private String cityName;
+    private String country;
+    private long[] times = new long[INITIAL_CAPACITY];
+    private int[] minTemperatures = new int[INITIAL_CAPACITY];
+    private int[] maxTemperatures = new int[INITIAL_CAPACITY];
+    private long[] temperatureSums = new long[INITIAL_CAPACITY];
+    private int[] samples = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Adds a point in time order, points nearly always arrive last so this is an append.
+     * A point at an existing time is the same report seen twice (live and from the database) and is dropped.
+     *
+     * @return true if the point was added
+     */
+    synchronized boolean add(String cityName, String country, long time, int minTemperature, int maxTemperature,
+                             long temperatureSum, int samples, long expiredBefore) {
+        int index = size > 0 && times[size - 1] < time ? size : Arrays.binarySearch(times, 0, size, time);
+        if (index >= 0 && index < size) {
+            return false;
+        }
+        index = index < 0 ? -index - 1 : index;
+        if (index == size) {
+            this.cityName = cityName;
+            this.country = country;
+        }
+        if (size == times.length) {
+            index -= trimBefore(expiredBefore);
+            if (index < 0) {
+                return false;
+            }
+            if (size == times.length) {
+                grow();
+            }
+        }
+        shiftRight(index);
+        times[index] = time;
+        minTemperatures[index] = minTemperature;
+        maxTemperatures[index] = maxTemperature;
+        temperatureSums[index] = temperatureSum;
+        this.samples[index] = samples;
+        size++;
+        return true;
+    }
+
+    /**
+     * Drops the points before the given time.
+     *
+     * @return the number of dropped points
+     */
+    synchronized int trimBefore(long time) {
+        int from = Arrays.binarySearch(times, 0, size, time);
+        from = from < 0 ? -from - 1 : from;
+        if (from > 0) {
+            int remaining = size - from;
+            System.arraycopy(times, from, times, 0, remaining);
+            System.arraycopy(minTemperatures, from, minTemperatures, 0, remaining);
+            System.arraycopy(maxTemperatures, from, maxTemperatures, 0, remaining);
+            System.arraycopy(temperatureSums, from, temperatureSums, 0, remaining);
+            System.arraycopy(samples, from, samples, 0, remaining);
+            size = remaining;
+        }
+        return from;
+    }
+
+    /**
+     * Drops the points before expiredBefore and folds the points before rawBefore into one point per hour,
+     * at the start of the hour, the way the database rolls reports up. Folding an hour again changes nothing.
+     * Shrinks the arrays when most of them is unused.
+     *
+     * @return the number of points dropped or folded away
+     */
+    synchronized int compact(long rawBefore, long expiredBefore) {
+        int removed = trimBefore(expiredBefore);
+        int end = Arrays.binarySearch(times, 0, size, rawBefore);
+        end = end < 0 ? -end - 1 : end;
+
+        int folded = 0;
+        int i = 0;
+        while (i < end) {
+            long hourStart = Math.floorDiv(times[i], HOUR_SECONDS) * HOUR_SECONDS;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            int count = 0;
+            for (; i < end && times[i] < hourStart + HOUR_SECONDS; i++) {
+                min = Math.min(min, minTemperatures[i]);
+                max = Math.max(max, maxTemperatures[i]);
+                sum += temperatureSums[i];
+                count += samples[i];
+            }
+            times[folded] = hourStart;
+            minTemperatures[folded] = min;
+            maxTemperatures[folded] = max;
+            temperatureSums[folded] = sum;
+            samples[folded] = count;
+            folded++;
+        }
+        if (folded < end) {
+            int remaining = size - end;
+            System.arraycopy(times, end, times, folded, remaining);
+            System.arraycopy(minTemperatures, end, minTemperatures, folded, remaining);
+            System.arraycopy(maxTemperatures, end, maxTemperatures, folded, remaining);
+            System.arraycopy(temperatureSums, end, temperatureSums, folded, remaining);
+            System.arraycopy(samples, end, samples, folded, remaining);
+            removed += end - folded;
+            size = folded + remaining;
+        }
+        if (times.length > INITIAL_CAPACITY && size < times.length / 4) {
+            resize(Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        return removed;
+    }
+
+    /**
+     * Aggregates the points in [from, to) into buckets of bucketSeconds, aligned to the epoch so that
+     * hourly and daily buckets start on the hour and the day. Empty buckets are left out.
+     */
+    synchronized Aggregate aggregate(long from, long to, long bucketSeconds) {
+        int start = Arrays.binarySearch(times, 0, size, from);
+        start = start < 0 ? -start - 1 : start;
+        int end = Arrays.binarySearch(times, 0, size, to);
+        end = end < 0 ? -end - 1 : end;
+
+        List<WeatherHistoryBucket> buckets = new ArrayList<>();
+        int totalMin = Integer.MAX_VALUE;
+        int totalMax = Integer.MIN_VALUE;
+        long totalSum = 0;
+        int totalSamples = 0;
+
+        int i = start;
+        while (i < end) {
+            long bucketStart = Math.floorDiv(times[i], bucketSeconds) * bucketSeconds;
+            long bucketEnd = bucketStart + bucketSeconds;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            int count = 0;
+            for (; i < end && times[i] < bucketEnd; i++) {
+                min = Math.min(min, minTemperatures[i]);
+                max = Math.max(max, maxTemperatures[i]);
+                sum += temperatureSums[i];
+                count += samples[i];
+            }
+            buckets.add(new WeatherHistoryBucket(toLocalDateTime(bucketStart), min, max, (double) sum / count, count));
+            totalMin = Math.min(totalMin, min);
+            totalMax = Math.max(totalMax, max);
+            totalSum += sum;
+            totalSamples += count;
+        }
+        return totalSamples == 0
+                ? new Aggregate(cityName, country, null, null, null, 0, buckets)
+                : new Aggregate(cityName, country, totalMin, totalMax, (double) totalSum / totalSamples, totalSamples, buckets);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private void shiftRight(int index) {
+        int moved = size - index;
+        if (moved > 0) {
+            System.arraycopy(times, index, times, index + 1, moved);
+            System.arraycopy(minTemperatures, index, minTemperatures, index + 1, moved);
+            System.arraycopy(maxTemperatures, index, maxTemperatures, index + 1, moved);
+            System.arraycopy(temperatureSums, index, temperatureSums, index + 1, moved);
+            System.arraycopy(samples, index, samples, index + 1, moved);
+        }
+    }
+
+    private void grow() {
+        resize(times.length + (times.length >> 1));
+    }
+
+    private void resize(int capacity) {
+        times = Arrays.copyOf(times, capacity);
+        minTemperatures = Arrays.copyOf(minTemperatures, capacity);
+        maxTemperatures = Arrays.copyOf(maxTemperatures, capacity);
+        temperatureSums = Arrays.copyOf(temperatureSums, capacity);
+        samples = Arrays.copyOf(samples, capacity);
+    }
+
+    record Aggregate(String cityName, String country, Integer minTemperature, Integer maxTemperature,
+                     Double averageTemperature, int samples, List<WeatherHistoryBucket> buckets) {
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.weather.history;
+
+import com.example.weather.dto.WeatherHistoryResponse;
+import com.example.weather.dto.WeatherSeriesPoint;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherHourlyRollupRepository;
+import com.example.weather.repositroy.WeatherRepository;
+import com.example.weather.service.WeatherStoredEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * In-memory temperature history of every city for the last window ms, kept as one columnar {@link CitySeries}
+ * per city. New reports are appended as they are fetched and the history is loaded from the database
+ * (raw reports and hourly rollups) at startup, so history queries never go through JPA. Like the database,
+ * the store folds reports older than weather-stack.retention.window into hourly points and drops what is
+ * older than the window, on a schedule, so a city's series stays bounded even when it is not fetched any more.
+ */
+@Component
+public class WeatherSeriesStore implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherSeriesStore.class);
+
+    private final ConcurrentMap<String, CitySeries> series = new ConcurrentHashMap<>();
+    private final WeatherRepository weatherRepository;
+    private final WeatherHourlyRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final Duration window;
+    private final Duration rawWindow;
+    private final Timer queryTimer;
+
+    public WeatherSeriesStore(WeatherRepository weatherRepository,
+                              WeatherHourlyRollupRepository rollupRepository,
+                              TransactionTemplate transactionTemplate,
+                              Clock clock,
+                              MeterRegistry meterRegistry,
+                              @Value("${weather-stack.history.window}") long windowMillis,
+                              @Value("${weather-stack.retention.window}") long rawWindowMillis) {
+        this.weatherRepository = weatherRepository;
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.window = Duration.ofMillis(windowMillis);
+        this.rawWindow = Duration.ofMillis(rawWindowMillis);
+        this.queryTimer = Timer.builder("weather.history.query")
+                .description("Time to aggregate the temperature history of a city")
+                .register(meterRegistry);
+        Gauge.builder("weather.history.points", series, store -> store.values().stream().mapToLong(CitySeries::size).sum())
+                .description("Points of temperature history kept in memory")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onWeatherStored(WeatherStoredEvent event) {
+        WeatherEntity weather = event.weather();
+        Integer temperature = weather.getTemperature();
+        if (temperature == null) {
+            // weatherstack sent no temperature, there is nothing to add to the history
+            logger.debug("Report of {} at {} has no temperature, not added to the history", weather.getRequestedCityName(), weather.getUpdatedTime());
+            return;
+        }
+        add(weather.getRequestedCityName(), weather.getCityName(), weather.getCountry(), weather.getUpdatedTime(),
+                temperature, temperature, temperature, 1);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        LocalDateTime since = LocalDateTime.now(clock).minus(window);
+        AtomicLong loaded = new AtomicLong();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<WeatherSeriesPoint> rollups = rollupRepository.streamSeriesPointsSince(since);
+                 Stream<WeatherSeriesPoint> reports = weatherRepository.streamSeriesPointsSince(since)) {
+                Stream.concat(rollups, reports).forEach(point -> {
+                    if (add(point.requestedCityName(), point.cityName(), point.country(), point.time(), point.minTemperature(),
+                            point.maxTemperature(), Math.round(point.temperatureSum()), point.samples())) {
+                        loaded.incrementAndGet();
+                    }
+                });
+            }
+        });
+        logger.info("Loaded {} points of temperature history for {} cities in {} ms", loaded.get(), series.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Folds the reports older than the retention window into hourly points, drops the points older than the
+     * history window and removes the cities left without history.
+     */
+    @Scheduled(fixedDelayString = "${weather-stack.history.compaction-interval}", initialDelayString = "${weather-stack.history.compaction-interval}")
+    public void compact() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        // only whole hours are folded, as in the database
+        long rawBefore = CitySeries.toEpochSecond(now.minus(rawWindow).truncatedTo(ChronoUnit.HOURS));
+        long expiredBefore = CitySeries.toEpochSecond(now.minus(window));
+        AtomicLong removed = new AtomicLong();
+        for (String city : series.keySet()) {
+            series.computeIfPresent(city, (key, citySeries) -> {
+                removed.addAndGet(citySeries.compact(rawBefore, expiredBefore));
+                return citySeries.size() == 0 ? null : citySeries;
+            });
+        }
+        logger.debug("Compacted {} points of temperature history, {} cities left", removed.get(), series.size());
+    }
+
+    /**
+     * Aggregates the history of a city in [from, to) into buckets of bucket width.
+     */
+    public WeatherHistoryResponse query(String city, LocalDateTime from, LocalDateTime to, Duration bucket) {
+        return queryTimer.record(() -> {
+            CitySeries citySeries = series.get(city);
+            CitySeries.Aggregate aggregate = citySeries == null
+                    ? new CitySeries().aggregate(0, 0, 1)
+                    : citySeries.aggregate(CitySeries.toEpochSecond(from), CitySeries.toEpochSecond(to), bucket.toSeconds());
+            return new WeatherHistoryResponse(city, aggregate.cityName(), aggregate.country(), from, to, bucket.toMinutes(),
+                    aggregate.minTemperature(), aggregate.maxTemperature(), aggregate.averageTemperature(), aggregate.samples(),
+                    aggregate.buckets());
+        });
+    }
+
+    private boolean add(String city, String cityName, String country, LocalDateTime time,
+                        int minTemperature, int maxTemperature, long temperatureSum, int samples) {
+        long expiredBefore = CitySeries.toEpochSecond(LocalDateTime.now(clock).minus(window));
+        boolean[] added = new boolean[1];
+        // added under the map's lock of the city, so compact can not remove a series a point is being added to
+        series.compute(city, (key, citySeries) -> {
+            CitySeries target = citySeries == null ? new CitySeries() : citySeries;
+            added[0] = target.add(cityName, country, CitySeries.toEpochSecond(time), minTemperature, maxTemperature,
+                    temperatureSum, samples, expiredBefore);
+            return target.size() == 0 ? null : target;
+        });
+        return added[0];
+    }
+}
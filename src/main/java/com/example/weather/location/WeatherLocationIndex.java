@@ -0,0 +1,170 @@
+package com.example.weather.location;
+
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherRepository;
+import com.example.weather.service.WeatherStoredEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The latest report of each city by its weatherstack coordinates, in a grid of cells one radius wide.
+ * A point is looked up in its own cell and the cells around it, so a lookup reads a handful of cities
+ * however many are indexed. Reports are added as they are fetched and loaded from the database at startup.
+ */
+@Component
+public class WeatherLocationIndex implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherLocationIndex.class);
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+    // a degree of longitude is cos(latitude) degrees of latitude wide, this keeps the polar cells searchable
+    private static final double MIN_COS_LATITUDE = 0.01;
+
+    private final ConcurrentMap<String, LocatedWeather> cities = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<String>> cells = new ConcurrentHashMap<>();
+    private final WeatherRepository weatherRepository;
+    private final double radiusKm;
+    private final double cellDegrees;
+    private final int longitudeCells;
+    private final int maxCities;
+
+    public WeatherLocationIndex(WeatherRepository weatherRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${weather-stack.location.radius-km}") double radiusKm,
+                                @Value("${weather-stack.location.max-cities}") int maxCities) {
+        this.weatherRepository = weatherRepository;
+        this.radiusKm = radiusKm;
+        this.cellDegrees = radiusKm / KM_PER_DEGREE;
+        this.longitudeCells = (int) Math.ceil(360 / cellDegrees);
+        this.maxCities = maxCities;
+        Gauge.builder("weather.location.cities", cities, Map::size)
+                .description("Cities in the coordinate index")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onWeatherStored(WeatherStoredEvent event) {
+        add(event.weather());
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        List<WeatherEntity> weathers = weatherRepository.findLatestLocated(Limit.of(maxCities));
+        weathers.forEach(this::add);
+        logger.info("Indexed the coordinates of {} cities in {} ms", cities.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * The indexed city nearest to the point, if one is within radius-km of it.
+     */
+    public Optional<LocatedWeather> nearest(double latitude, double longitude) {
+        int latitudeCell = latitudeCell(latitude);
+        // the widest row searched is the one nearest to a pole
+        double farthestLatitude = Math.min(90, Math.abs(latitude) + cellDegrees);
+        double cosLatitude = Math.max(MIN_COS_LATITUDE, Math.cos(Math.toRadians(farthestLatitude)));
+        int longitudeSpan = Math.min(longitudeCells / 2, (int) Math.ceil(1 / cosLatitude));
+        int longitudeCell = longitudeCell(longitude);
+
+        LocatedWeather nearest = null;
+        double nearestKm = radiusKm;
+        for (int row = latitudeCell - 1; row <= latitudeCell + 1; row++) {
+            for (int column = longitudeCell - longitudeSpan; column <= longitudeCell + longitudeSpan; column++) {
+                Set<String> cellCities = cells.get(cellKey(row, column));
+                if (cellCities == null) {
+                    continue;
+                }
+                for (String city : cellCities) {
+                    LocatedWeather candidate = cities.get(city);
+                    if (candidate == null) {
+                        continue;
+                    }
+                    double km = distanceKm(latitude, longitude, candidate.latitude(), candidate.longitude());
+                    if (km <= nearestKm) {
+                        nearest = candidate;
+                        nearestKm = km;
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(nearest);
+    }
+
+    public int size() {
+        return cities.size();
+    }
+
+    private void add(WeatherEntity weather) {
+        Double latitude = weather.getLatitude();
+        Double longitude = weather.getLongitude();
+        if (latitude == null || longitude == null) {
+            return;
+        }
+        String city = weather.getRequestedCityName();
+        if (cities.size() >= maxCities && !cities.containsKey(city)) {
+            logger.debug("Coordinate index is full, {} is not indexed", city);
+            return;
+        }
+        long cell = cellKey(latitudeCell(latitude), longitudeCell(longitude));
+        LocatedWeather located = new LocatedWeather(city, latitude, longitude, cell, WeatherDto.convert(weather));
+        LocatedWeather[] previous = new LocatedWeather[1];
+        LocatedWeather current = cities.compute(city, (key, existing) -> {
+            previous[0] = existing;
+            // the event of an older report may arrive after the startup load of a newer one
+            return existing != null && located.weather().updatedTime().isBefore(existing.weather().updatedTime()) ? existing : located;
+        });
+        if (current != located) {
+            return;
+        }
+        cells.computeIfAbsent(cell, key -> ConcurrentHashMap.newKeySet()).add(city);
+        if (previous[0] != null && previous[0].cell() != cell) {
+            cells.computeIfPresent(previous[0].cell(), (key, cellCities) -> {
+                cellCities.remove(city);
+                return cellCities.isEmpty() ? null : cellCities;
+            });
+        }
+    }
+
+    private int latitudeCell(double latitude) {
+        return (int) Math.floor((latitude + 90) / cellDegrees);
+    }
+
+    private int longitudeCell(double longitude) {
+        return (int) Math.floor((longitude + 180) / cellDegrees);
+    }
+
+    // columns wrap around the antimeridian
+    private long cellKey(int row, int column) {
+        return (long) row * longitudeCells + Math.floorMod(column, longitudeCells);
+    }
+
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitudeDelta = Math.toRadians(latitude2 - latitude1);
+        double longitudeDelta = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(longitudeDelta / 2) * Math.sin(longitudeDelta / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * The latest report of a city with the coordinates weatherstack answered with.
+     */
+    public record LocatedWeather(String city, double latitude, double longitude, long cell, WeatherDto weather) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.weather.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+@Entity
+public class CityAliasEntity {
+    @Id
+    private String alias;
+    private String canonicalName;
+
+    public CityAliasEntity(String alias, String canonicalName) {
+        this.alias = alias;
+        this.canonicalName = canonicalName;
+    }
+
+    public CityAliasEntity() {
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getCanonicalName() {
+        return canonicalName;
+    }
+}
@@ -8,17 +8,20 @@ import org.hibernate.annotations.GenericGenerator;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "idx_weather_city_updated_time", columnList = "requestedCityName, updatedTime desc"))
 public class WeatherEntity {
     @Id
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
-    private String id="";
+    private String id;
     private String requestedCityName;
     private String cityName;
     private String country;
     private Integer temperature;
     private LocalDateTime updatedTime;
     private LocalDateTime responseLocalTime;
+    private Double latitude;
+    private Double longitude;
 
     public WeatherEntity(String id, String requestedCityName, String cityName, String country, Integer temperature, LocalDateTime updatedTime, LocalDateTime responseLocalTime) {
         this.id = id;
@@ -31,7 +34,6 @@ public class WeatherEntity {
     }
 
     public WeatherEntity(String requestedCityName, String cityName, String country, Integer temperature, LocalDateTime updatedTime, LocalDateTime responseLocalTime) {
-        this.id = "";
         this.requestedCityName = requestedCityName;
         this.cityName = cityName;
         this.country = country;
@@ -40,6 +42,12 @@ public class WeatherEntity {
         this.responseLocalTime = responseLocalTime;
     }
 
+    public WeatherEntity(String requestedCityName, String cityName, String country, Integer temperature, LocalDateTime updatedTime, LocalDateTime responseLocalTime, Double latitude, Double longitude) {
+        this(requestedCityName, cityName, country, temperature, updatedTime, responseLocalTime);
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
     public WeatherEntity() {
     }
 
@@ -70,4 +78,12 @@ public class WeatherEntity {
     public LocalDateTime getResponseLocalTime() {
         return responseLocalTime;
     }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
 }
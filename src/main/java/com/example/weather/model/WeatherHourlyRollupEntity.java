@@ -0,0 +1,82 @@
+package com.example.weather.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Temperature of a city over one hour of history that is older than the retention window.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_weather_rollup_city_hour", columnNames = {"requestedCityName", "hourStart"}))
+public class WeatherHourlyRollupEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+    private String requestedCityName;
+    private String cityName;
+    private String country;
+    private LocalDateTime hourStart;
+    private Integer minTemperature;
+    private Integer maxTemperature;
+    private Double averageTemperature;
+    private Integer samples;
+
+    public WeatherHourlyRollupEntity(String requestedCityName, String cityName, String country, LocalDateTime hourStart) {
+        this.requestedCityName = requestedCityName;
+        this.cityName = cityName;
+        this.country = country;
+        this.hourStart = hourStart;
+        this.samples = 0;
+    }
+
+    public WeatherHourlyRollupEntity() {
+    }
+
+    /**
+     * Adds the temperatures of more reports of the same hour, the hour may be compacted over several batches.
+     */
+    public void merge(int minTemperature, int maxTemperature, double temperatureSum, int samples) {
+        double currentSum = this.samples == 0 ? 0 : this.averageTemperature * this.samples;
+        this.minTemperature = this.samples == 0 ? minTemperature : Math.min(this.minTemperature, minTemperature);
+        this.maxTemperature = this.samples == 0 ? maxTemperature : Math.max(this.maxTemperature, maxTemperature);
+        this.samples += samples;
+        this.averageTemperature = (currentSum + temperatureSum) / this.samples;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRequestedCityName() {
+        return requestedCityName;
+    }
+
+    public String getCityName() {
+        return cityName;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public LocalDateTime getHourStart() {
+        return hourStart;
+    }
+
+    public Integer getMinTemperature() {
+        return minTemperature;
+    }
+
+    public Integer getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    public Double getAverageTemperature() {
+        return averageTemperature;
+    }
+
+    public Integer getSamples() {
+        return samples;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.weather.quota;
+
+import java.time.Clock;
+
+/**
+ * Token bucket kept in process. Used by a single instance and by tests.
+ */
+public class LocalUpstreamQuotaStore implements UpstreamQuotaStore {
+
+    private final long capacity;
+    private final double tokensPerMilli;
+    private final Clock clock;
+    private double tokens;
+    private long refilledAt;
+
+    public LocalUpstreamQuotaStore(long capacity, double tokensPerMilli, Clock clock) {
+        this.capacity = capacity;
+        this.tokensPerMilli = tokensPerMilli;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.refilledAt = clock.millis();
+    }
+
+    @Override
+    public synchronized long tryConsume() {
+        long now = clock.millis();
+        tokens = Math.min(capacity, tokens + Math.max(0, now - refilledAt) * tokensPerMilli);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerMilli);
+    }
+
+    @Override
+    public synchronized void refund() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.weather.quota;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * Token bucket in a Redis hash, shared by every instance. The refill and the take run in one script
+ * on the Redis clock, so the instances never race on the bucket or disagree on the time.
+ */
+public class RedisUpstreamQuotaStore implements UpstreamQuotaStore {
+
+    private static final String BUCKET_KEY = "weather:quota:upstream";
+    private static final RedisScript<Long> CONSUME_SCRIPT = RedisScript.of("""
+            local capacity = tonumber(ARGV[1])
+            local tokens_per_milli = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'refilled_at')
+            local tokens = tonumber(bucket[1]) or capacity
+            local refilled_at = tonumber(bucket[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - refilled_at) * tokens_per_milli)
+            local wait = 0
+            if tokens >= 1 then
+                tokens = tokens - 1
+            else
+                wait = math.ceil((1 - tokens) / tokens_per_milli)
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'refilled_at', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / tokens_per_milli))
+            return wait
+            """, Long.class);
+    // an expired bucket is already full, so there is nothing to put back
+    private static final RedisScript<Long> REFUND_SCRIPT = RedisScript.of("""
+            local capacity = tonumber(ARGV[1])
+            local tokens = tonumber(redis.call('HGET', KEYS[1], 'tokens'))
+            if tokens then
+                redis.call('HSET', KEYS[1], 'tokens', tostring(math.min(capacity, tokens + 1)))
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long capacity;
+    private final double tokensPerMilli;
+
+    public RedisUpstreamQuotaStore(StringRedisTemplate redisTemplate, long capacity, double tokensPerMilli) {
+        this.redisTemplate = redisTemplate;
+        this.capacity = capacity;
+        this.tokensPerMilli = tokensPerMilli;
+    }
+
+    @Override
+    public long tryConsume() {
+        Long wait = redisTemplate.execute(CONSUME_SCRIPT, List.of(BUCKET_KEY), String.valueOf(capacity), String.valueOf(tokensPerMilli));
+        return wait == null ? 0 : wait;
+    }
+
+    @Override
+    public void refund() {
+        redisTemplate.execute(REFUND_SCRIPT, List.of(BUCKET_KEY), String.valueOf(capacity));
+    }
+}
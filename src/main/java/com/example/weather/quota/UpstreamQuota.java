@@ -0,0 +1,68 @@
+package com.example.weather.quota;
+
+import com.example.weather.exception.UpstreamQuotaExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Spends the weatherstack plan. Every upstream call takes a token first, so the calls of all instances
+ * together never go over the bucket, however many requests the instances get. A call the circuit breaker
+ * or the bulkhead turns away never reaches weatherstack, and its token is given back.
+ */
+@Component
+public class UpstreamQuota {
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamQuota.class);
+
+    private final UpstreamQuotaStore quotaStore;
+    private final Counter grantedCalls;
+    private final Counter deniedCalls;
+    private final Counter refundedCalls;
+
+    public UpstreamQuota(UpstreamQuotaStore quotaStore, MeterRegistry meterRegistry) {
+        this.quotaStore = quotaStore;
+        this.grantedCalls = Counter.builder("weather.upstream.quota")
+                .tag("result", "granted")
+                .description("Weatherstack calls checked against the quota")
+                .register(meterRegistry);
+        this.deniedCalls = Counter.builder("weather.upstream.quota")
+                .tag("result", "denied")
+                .description("Weatherstack calls checked against the quota")
+                .register(meterRegistry);
+        this.refundedCalls = Counter.builder("weather.upstream.quota")
+                .tag("result", "refunded")
+                .description("Weatherstack calls checked against the quota")
+                .register(meterRegistry);
+    }
+
+    public void acquire(String city) {
+        long waitMillis;
+        try {
+            waitMillis = quotaStore.tryConsume();
+        } catch (RuntimeException e) {
+            // without the store the spend can not be bounded, so the call is not made
+            logger.warn("Upstream quota store is not available: {}", e.getMessage());
+            deniedCalls.increment();
+            throw new UpstreamQuotaExceededException(city, Duration.ofSeconds(1));
+        }
+        if (waitMillis > 0) {
+            deniedCalls.increment();
+            throw new UpstreamQuotaExceededException(city, Duration.ofMillis(waitMillis));
+        }
+        grantedCalls.increment();
+    }
+
+    public void refund(String city) {
+        try {
+            quotaStore.refund();
+            refundedCalls.increment();
+        } catch (RuntimeException e) {
+            // the token is lost, the bucket refills it in time
+            logger.warn("Could not give back the upstream token of {}: {}", city, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.weather.quota;
+
+/**
+ * Holds the weatherstack token bucket. The bucket refills continuously up to its capacity,
+ * and every upstream call takes one token from it.
+ */
+public interface UpstreamQuotaStore {
+
+    /**
+     * @return 0 when a token was taken, otherwise the milliseconds until the next token is available
+     */
+    long tryConsume();
+
+    /**
+     * Puts back a token that was taken for a call weatherstack never saw, up to the capacity.
+     */
+    void refund();
+}
@@ -0,0 +1,7 @@
+package com.example.weather.repositroy;
+
+import com.example.weather.model.CityAliasEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CityAliasRepository extends JpaRepository<CityAliasEntity, String> {
+}
@@ -0,0 +1,23 @@
+package com.example.weather.repositroy;
+
+import com.example.weather.dto.WeatherSeriesPoint;
+import com.example.weather.model.WeatherHourlyRollupEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface WeatherHourlyRollupRepository extends JpaRepository<WeatherHourlyRollupEntity, String> {
+    List<WeatherHourlyRollupEntity> findByRequestedCityNameInAndHourStartIn(Collection<String> names, Collection<LocalDateTime> hours);
+
+    @Query("select new com.example.weather.dto.WeatherSeriesPoint(r.requestedCityName, r.cityName, r.country, r.hourStart, " +
+            "r.minTemperature, r.maxTemperature, r.averageTemperature * r.samples, r.samples) " +
+            "from WeatherHourlyRollupEntity r where r.hourStart >= :since and r.minTemperature is not null " +
+            "and r.maxTemperature is not null and r.averageTemperature is not null and r.samples is not null " +
+            "order by r.requestedCityName, r.hourStart")
+    Stream<WeatherSeriesPoint> streamSeriesPointsSince(@Param("since") LocalDateTime since);
+}
@@ -1,10 +1,61 @@
 package com.example.weather.repositroy;
 
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.dto.WeatherSeriesPoint;
 import com.example.weather.model.WeatherEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface WeatherRepository extends JpaRepository<WeatherEntity,String> {
-    Optional<WeatherEntity> findFirstByRequestedCityNameOrderByUpdatedTimeDesc (String name);
+    /**
+     * Reads only the columns of the latest report of a city. Served by the (requestedCityName, updatedTime desc)
+     * index, so it stays a single index seek however long the city's history grows. The order by repeats the
+     * city column to match the whole index, otherwise the database reads every row of the city and sorts them.
+     */
+    @Query("select new com.example.weather.dto.WeatherDto(w.cityName, w.country, w.temperature, w.updatedTime) " +
+            "from WeatherEntity w where w.requestedCityName = :name order by w.requestedCityName, w.updatedTime desc limit 1")
+    Optional<WeatherDto> findLatestByRequestedCityName(@Param("name") String name);
+
+    @Query("select w from WeatherEntity w where w.requestedCityName in :names and w.updatedTime = " +
+            "(select max(l.updatedTime) from WeatherEntity l where l.requestedCityName = w.requestedCityName)")
+    List<WeatherEntity> findLatestByRequestedCityNameIn(@Param("names") Collection<String> names);
+
+    /**
+     * Reports older than before that are not the latest of their city. The latest report is kept however old it
+     * is, it is still served as stale when weatherstack can not be called.
+     */
+    @Query("select w from WeatherEntity w where w.updatedTime < :before and w.updatedTime < " +
+            "(select max(l.updatedTime) from WeatherEntity l where l.requestedCityName = w.requestedCityName)")
+    List<WeatherEntity> findSupersededBefore(@Param("before") LocalDateTime before, Limit limit);
+
+    @Query("select w from WeatherEntity w where w.updatedTime > :since and w.updatedTime = " +
+            "(select max(l.updatedTime) from WeatherEntity l where l.requestedCityName = w.requestedCityName) " +
+            "order by w.updatedTime desc")
+    List<WeatherEntity> findLatestUpdatedAfter(@Param("since") LocalDateTime since, Limit limit);
+
+    /**
+     * The latest report of each city whose coordinates are known, newest first.
+     */
+    @Query("select w from WeatherEntity w where w.latitude is not null and w.longitude is not null and w.updatedTime = " +
+            "(select max(l.updatedTime) from WeatherEntity l where l.requestedCityName = w.requestedCityName) " +
+            "order by w.updatedTime desc")
+    List<WeatherEntity> findLatestLocated(Limit limit);
+
+    /**
+     * Temperatures of the reports since the given time, as single report points of the in-memory history.
+     * Reports without a temperature are left out. Ordered by city and time, so each series is built by appends.
+     * Projected, so the rows are not kept in the persistence context while the stream is read.
+     */
+    @Query("select new com.example.weather.dto.WeatherSeriesPoint(w.requestedCityName, w.cityName, w.country, w.updatedTime, " +
+            "w.temperature, w.temperature, cast(w.temperature as Double), 1) from WeatherEntity w " +
+            "where w.updatedTime >= :since and w.temperature is not null order by w.requestedCityName, w.updatedTime")
+    Stream<WeatherSeriesPoint> streamSeriesPointsSince(@Param("since") LocalDateTime since);
 }
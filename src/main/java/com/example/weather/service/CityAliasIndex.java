@@ -0,0 +1,107 @@
+package com.example.weather.service;
+
+import com.example.weather.model.CityAliasEntity;
+import com.example.weather.repositroy.CityAliasRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maps the requested spellings of a city to one canonical name, the normalized "name, country" weatherstack
+ * answered with, so "Antalya", "antalya " and "Antalya Turkey" share one cache entry and one history.
+ * Aliases are learned from weatherstack responses and kept in the city_alias table, the most used ones in memory.
+ */
+@Component
+public class CityAliasIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CityAliasIndex.class);
+
+    private final CityAliasRepository cityAliasRepository;
+    private final CityNameNormalizer cityNameNormalizer;
+    private final Cache<String, String> canonicalNames;
+    private final Map<String, Counter> hits;
+    private final Map<String, Counter> misses;
+
+    public CityAliasIndex(CityAliasRepository cityAliasRepository,
+                          CityNameNormalizer cityNameNormalizer,
+                          @Value("${weather-stack.cache-max-size}") long maxSize,
+                          MeterRegistry meterRegistry) {
+        this.cityAliasRepository = cityAliasRepository;
+        this.cityNameNormalizer = cityNameNormalizer;
+        this.canonicalNames = Caffeine.newBuilder().maximumSize(maxSize).build();
+        this.hits = lookupCounters("hit", meterRegistry);
+        this.misses = lookupCounters("miss", meterRegistry);
+    }
+
+    /**
+     * The cache and database key of a requested city: its canonical name when weatherstack has resolved
+     * the spelling before, otherwise the normalized spelling.
+     */
+    public String resolve(String city) {
+        String name = cityNameNormalizer.normalize(city);
+        String canonicalName = canonicalNames.getIfPresent(name);
+        if (canonicalName == null) {
+            // read outside of a caffeine compute, so a blocked (virtual) thread is never pinned
+            canonicalName = cityAliasRepository.findById(name).map(CityAliasEntity::getCanonicalName).orElse(name);
+            canonicalNames.put(name, canonicalName);
+        }
+        return canonicalName;
+    }
+
+    /**
+     * Records the city weatherstack resolved a name to and returns its canonical name.
+     */
+    public String register(String name, String cityName, String country) {
+        String canonicalName = cityNameNormalizer.normalize(cityName + ", " + Objects.toString(country, ""));
+        if (!canonicalName.equals(canonicalNames.getIfPresent(name))) {
+            canonicalNames.put(name, canonicalName);
+            canonicalNames.put(canonicalName, canonicalName);
+            if (!name.equals(canonicalName)) {
+                saveAlias(name, canonicalName);
+            }
+        }
+        return canonicalName;
+    }
+
+    private void saveAlias(String name, String canonicalName) {
+        try {
+            cityAliasRepository.save(new CityAliasEntity(name, canonicalName));
+            logger.info("City alias {} is resolved to {}", name, canonicalName);
+        } catch (RuntimeException e) {
+            // the alias is still known in memory, it is learned again after a restart
+            logger.warn("Could not save city alias {} of {}", name, canonicalName, e);
+        }
+    }
+
+    /**
+     * Counts a cache lookup by how its key was found: exact when the requested name already was the key, normalized
+     * when normalizing it was enough and alias when the alias index resolved it. Exact hits are the hits a cache
+     * keyed by the raw name would have had.
+     */
+    public void recordLookup(String city, String key, boolean hit) {
+        String match = city.equals(key) ? "exact" : cityNameNormalizer.normalize(city).equals(key) ? "normalized" : "alias";
+        (hit ? hits : misses).get(match).increment();
+    }
+
+    private static Map<String, Counter> lookupCounters(String result, MeterRegistry meterRegistry) {
+        return Map.of(
+                "exact", lookupCounter("exact", result, meterRegistry),
+                "normalized", lookupCounter("normalized", result, meterRegistry),
+                "alias", lookupCounter("alias", result, meterRegistry));
+    }
+
+    private static Counter lookupCounter(String match, String result, MeterRegistry meterRegistry) {
+        return Counter.builder("weather.cache.lookup")
+                .description("Weather cache lookups by how the requested city name was matched to the cache key")
+                .tag("match", match)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.weather.service;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Folds the spellings of a city name into one key: accents and other combining marks are dropped,
+ * whitespace is trimmed and collapsed to single spaces and letters are lower cased, so
+ * "İzmir", " izmir " and "IZMIR" are all "izmir".
+ */
+@Component
+public class CityNameNormalizer {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public String normalize(String city) {
+        if (isNormalized(city)) {
+            return city;
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(city, Normalizer.Form.NFKD)).replaceAll("");
+        // the dotless i of Turkish has no decomposition, so it is folded by hand like the dotted capital İ above
+        folded = folded.replace('ı', 'i');
+        return WHITESPACE.matcher(folded.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    // most requests are already lower case ascii, they are returned without allocating
+    private static boolean isNormalized(String city) {
+        int length = city.length();
+        for (int i = 0; i < length; i++) {
+            char c = city.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) {
+                return false;
+            }
+            if (Character.isWhitespace(c) && (c != ' ' || i == 0 || i == length - 1 || city.charAt(i - 1) == ' ')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.weather.constants.Constants.API_CALL_LIMIT;
+
+/**
+ * Refreshes the most requested cities shortly before their report leaves the api call limit window,
+ * so user requests for popular cities are answered from the cache.
+ * Refreshes are spread over the scheduling period and capped by an upstream call budget per period.
+ */
+@Component
+@ConditionalOnProperty(name = "weather-stack.refresh.hot.enabled", havingValue = "true")
+public class HotCityRefreshScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(HotCityRefreshScheduler.class);
+
+    private final HotCityTracker hotCityTracker;
+    private final WeatherService weatherService;
+    private final TaskScheduler taskScheduler;
+    private final Clock clock;
+    private final int hotSetSize;
+    private final int budgetPerPeriod;
+    private final Duration period;
+    private final Duration refreshAhead;
+    private final Counter scheduledRefreshes;
+
+    public HotCityRefreshScheduler(HotCityTracker hotCityTracker,
+                                   WeatherService weatherService,
+                                   TaskScheduler taskScheduler,
+                                   Clock clock,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${weather-stack.refresh.hot.size}") int hotSetSize,
+                                   @Value("${weather-stack.refresh.hot.budget}") int budgetPerPeriod,
+                                   @Value("${weather-stack.refresh.hot.period}") long periodMillis,
+                                   @Value("${weather-stack.refresh.hot.refresh-ahead}") long refreshAheadMillis) {
+        this.hotCityTracker = hotCityTracker;
+        this.weatherService = weatherService;
+        this.taskScheduler = taskScheduler;
+        this.clock = clock;
+        this.hotSetSize = hotSetSize;
+        this.budgetPerPeriod = budgetPerPeriod;
+        this.period = Duration.ofMillis(periodMillis);
+        this.refreshAhead = Duration.ofMillis(refreshAheadMillis);
+
+        Gauge.builder("weather.refresh.hot.budget", () -> budgetPerPeriod)
+                .description("Upstream calls the hot city refresh may spend per period")
+                .register(meterRegistry);
+        Gauge.builder("weather.refresh.hot.size", () -> hotSetSize)
+                .description("Number of hottest cities kept fresh by the refresh scheduler")
+                .register(meterRegistry);
+        Gauge.builder("weather.refresh.hot.tracked", hotCityTracker, HotCityTracker::size)
+                .description("Cities with a decayed request count")
+                .register(meterRegistry);
+        this.scheduledRefreshes = Counter.builder("weather.refresh.hot.scheduled")
+                .description("Refreshes scheduled for hot cities")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedRateString = "${weather-stack.refresh.hot.period}")
+    public void refreshHotCities() {
+        hotCityTracker.decay();
+
+        Instant now = clock.instant();
+        Instant nextRun = now.plus(period);
+        List<DueRefresh> dueRefreshes = new ArrayList<>();
+        for (String city : hotCityTracker.topCities(hotSetSize)) {
+            if (dueRefreshes.size() >= budgetPerPeriod) {
+                break;
+            }
+            refreshDeadline(city)
+                    .filter(deadline -> deadline.isBefore(nextRun))
+                    .ifPresent(deadline -> dueRefreshes.add(new DueRefresh(city, deadline)));
+        }
+        if (dueRefreshes.isEmpty()) {
+            return;
+        }
+
+        // the earliest deadlines take the first slots, overdue cities are spread over them instead of all starting now
+        dueRefreshes.sort(Comparator.comparing(DueRefresh::deadline));
+        Duration spacing = period.dividedBy(dueRefreshes.size());
+        for (int i = 0; i < dueRefreshes.size(); i++) {
+            DueRefresh dueRefresh = dueRefreshes.get(i);
+            Instant slotTime = now.plus(spacing.multipliedBy(i));
+            Instant startTime = dueRefresh.deadline().isAfter(now) && dueRefresh.deadline().isBefore(slotTime) ? dueRefresh.deadline() : slotTime;
+            taskScheduler.schedule(() -> weatherService.refreshInBackground(dueRefresh.city()), startTime);
+            scheduledRefreshes.increment();
+        }
+        logger.debug("Scheduled refresh for {} hot cities", dueRefreshes.size());
+    }
+
+    private Optional<Instant> refreshDeadline(String city) {
+        // a city another instance refreshed is found in the shared cache tier, so it is not refreshed again here
+        return weatherService.findLatestWeather(city)
+                .map(WeatherDto::updatedTime)
+                .map(updatedTime -> toInstant(updatedTime.plusMinutes(API_CALL_LIMIT)).minus(refreshAhead));
+    }
+
+    private Instant toInstant(LocalDateTime localDateTime) {
+        return localDateTime.atZone(clock.getZone()).toInstant();
+    }
+
+    private record DueRefresh(String city, Instant deadline) {
+    }
+}
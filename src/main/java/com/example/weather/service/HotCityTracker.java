@@ -0,0 +1,73 @@
+package com.example.weather.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Keeps an exponentially decayed request count per city. Every {@link #decay()} pass multiplies
+ * the scores by the decay factor and forgets cities that went cold, so the table stays bounded.
+ */
+@Component
+public class HotCityTracker {
+    private static final double MIN_SCORE = 0.5;
+
+    private final ConcurrentMap<String, DoubleAdder> scores = new ConcurrentHashMap<>();
+    private final int maxTrackedCities;
+    private final double decayFactor;
+
+    public HotCityTracker(@Value("${weather-stack.refresh.hot.max-tracked}") int maxTrackedCities,
+                          @Value("${weather-stack.refresh.hot.decay}") double decayFactor) {
+        this.maxTrackedCities = maxTrackedCities;
+        this.decayFactor = decayFactor;
+    }
+
+    public void record(String city) {
+        DoubleAdder score = scores.get(city);
+        if (score == null) {
+            // new cities wait for the next decay pass to free room
+            if (scores.size() >= maxTrackedCities) {
+                return;
+            }
+            score = scores.computeIfAbsent(city, key -> new DoubleAdder());
+        }
+        score.add(1);
+    }
+
+    public void decay() {
+        scores.forEach((city, score) -> {
+            double decayed = score.sumThenReset() * decayFactor;
+            if (decayed < MIN_SCORE) {
+                scores.remove(city, score);
+            } else {
+                score.add(decayed);
+            }
+        });
+    }
+
+    public List<String> topCities(int limit) {
+        PriorityQueue<Map.Entry<String, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        scores.forEach((city, score) -> {
+            top.offer(Map.entry(city, score.sum()));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+
+        List<Map.Entry<String, Double>> hottest = new ArrayList<>(top);
+        hottest.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()));
+        return hottest.stream().map(Map.Entry::getKey).toList();
+    }
+
+    public int size() {
+        return scores.size();
+    }
+}
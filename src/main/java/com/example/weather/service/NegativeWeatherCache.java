@@ -0,0 +1,61 @@
+package com.example.weather.service;
+
+import com.example.weather.exception.Error;
+import com.example.weather.exception.ErrorResponse;
+import com.example.weather.exception.WeatherStackApiException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Remembers for a short time the cities weatherstack could not resolve, so repeated requests for an unknown city
+ * are answered with the same error without calling weatherstack again. Only the configured error codes are cached:
+ * an unknown city is the city's fault, an invalid access key or a used up plan is not.
+ * Hits and misses are published as cache.gets{cache=negativeWeathers}.
+ */
+@Component
+public class NegativeWeatherCache {
+    public static final String NEGATIVE_CACHE_NAME = "negativeWeathers";
+
+    private final Cache<String, ErrorResponse> errors;
+    private final Set<String> errorCodes;
+
+    @Autowired
+    public NegativeWeatherCache(@Value("${weather-stack.negative-cache.ttl}") long ttlMillis,
+                                @Value("${weather-stack.negative-cache.max-size}") long maxSize,
+                                @Value("${weather-stack.negative-cache.error-codes}") String[] errorCodes,
+                                MeterRegistry meterRegistry) {
+        this(ttlMillis, maxSize, errorCodes, meterRegistry, Ticker.systemTicker());
+    }
+
+    NegativeWeatherCache(long ttlMillis, long maxSize, String[] errorCodes, MeterRegistry meterRegistry, Ticker ticker) {
+        this.errors = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.errorCodes = Set.of(errorCodes);
+        CaffeineCacheMetrics.monitor(meterRegistry, errors, NEGATIVE_CACHE_NAME);
+    }
+
+    public Optional<WeatherStackApiException> find(String city) {
+        return Optional.ofNullable(errors.getIfPresent(city)).map(WeatherStackApiException::new);
+    }
+
+    public void put(String city, WeatherStackApiException exception) {
+        Error error = exception.getErrorResponse().error();
+        if (error != null && errorCodes.contains(error.code())) {
+            errors.put(city, exception.getErrorResponse());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.weather.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight layer for weather loads: while a load for a city is running,
+ * other callers for the same city wait for its result instead of starting their own.
+ */
+@Component
+public class UpstreamRequestCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCalls;
+    private final Timer loadTimer;
+
+    public UpstreamRequestCoalescer(MeterRegistry meterRegistry) {
+        this.coalescedCalls = Counter.builder("weather.upstream.coalesced")
+                .description("Weather loads served by joining an in-flight load for the same city")
+                .register(meterRegistry);
+        this.loadTimer = Timer.builder("weather.load")
+                .description("Time to load a weather report that is not in the cache")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, future);
+
+        if (running != null) {
+            coalescedCalls.increment();
+            return (T) await(running);
+        }
+
+        try {
+            T result = loadTimer.record(loader);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Same as {@link #execute(String, Supplier)} for a loader that does not block: the caller gets a future
+     * and no thread waits while the load runs. Sync and async callers of the same key share one load.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, future);
+
+        if (running != null) {
+            coalescedCalls.increment();
+            return running.thenApply(result -> (T) result);
+        }
+
+        Timer.Sample sample = Timer.start();
+        CompletableFuture<T> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException | Error e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((result, error) -> {
+            sample.stop(loadTimer);
+            inFlight.remove(key, future);
+            if (error != null) {
+                future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                future.complete(result);
+            }
+        });
+        return future.thenApply(result -> (T) result);
+    }
+
+    private Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
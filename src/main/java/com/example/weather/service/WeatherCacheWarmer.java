@@ -0,0 +1,64 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+import static com.example.weather.constants.Constants.API_CALL_LIMIT;
+import static com.example.weather.constants.Constants.WEATHER_CACHE_NAME;
+
+/**
+ * Loads the latest up-to-date report of each city from the database into the cache at startup.
+ * Application runners finish before the application reports ready, so with a durable database
+ * a restarted instance takes traffic with a warm cache instead of sending it all to weatherstack.
+ * <p>
+ * Only the near cache is warmed. Writing through the two-level cache would put the older database reports
+ * into the shared tier and have every other instance drop its near cache, on each restart of each instance.
+ */
+@Component
+@ConditionalOnProperty(name = "weather-stack.warmup.enabled", havingValue = "true")
+public class WeatherCacheWarmer implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherCacheWarmer.class);
+
+    private final WeatherRepository weatherRepository;
+    private final CaffeineCacheManager nearCacheManager;
+    private final Clock clock;
+    private final int maxSize;
+
+    public WeatherCacheWarmer(WeatherRepository weatherRepository,
+                              CaffeineCacheManager nearCacheManager,
+                              Clock clock,
+                              @Value("${weather-stack.cache-max-size}") int maxSize) {
+        this.weatherRepository = weatherRepository;
+        this.nearCacheManager = nearCacheManager;
+        this.clock = clock;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        Cache weatherCache = Objects.requireNonNull(nearCacheManager.getCache(WEATHER_CACHE_NAME), "Weather cache is not configured");
+        LocalDateTime upToDateSince = LocalDateTime.now(clock).minusMinutes(API_CALL_LIMIT);
+
+        List<WeatherEntity> weathers = weatherRepository.findLatestUpdatedAfter(upToDateSince, Limit.of(maxSize));
+        weathers.forEach(weather -> weatherCache.put(weather.getRequestedCityName(), WeatherDto.convert(weather)));
+
+        logger.info("Warmed up the weather cache with {} cities in {} ms", weathers.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
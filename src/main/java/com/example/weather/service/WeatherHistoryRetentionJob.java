@@ -0,0 +1,136 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.model.WeatherHourlyRollupEntity;
+import com.example.weather.repositroy.WeatherHourlyRollupRepository;
+import com.example.weather.repositroy.WeatherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the weather history bounded. Reports older than the retention window are rolled up into hourly
+ * min/max/avg temperatures per city and deleted, in batches of batch-size rows with a pause in between,
+ * so the job never holds the table for long. The latest report of each city is always kept.
+ */
+@Component
+@ConditionalOnProperty(name = "weather-stack.retention.enabled", havingValue = "true")
+public class WeatherHistoryRetentionJob {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherHistoryRetentionJob.class);
+
+    private final WeatherRepository weatherRepository;
+    private final WeatherHourlyRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final Duration window;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final Counter compactedReports;
+    private final Timer runTimer;
+
+    public WeatherHistoryRetentionJob(WeatherRepository weatherRepository,
+                                      WeatherHourlyRollupRepository rollupRepository,
+                                      TransactionTemplate transactionTemplate,
+                                      Clock clock,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${weather-stack.retention.window}") long windowMillis,
+                                      @Value("${weather-stack.retention.batch-size}") int batchSize,
+                                      @Value("${weather-stack.retention.batch-pause}") long batchPauseMillis) {
+        this.weatherRepository = weatherRepository;
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.window = Duration.ofMillis(windowMillis);
+        this.batchSize = batchSize;
+        this.batchPause = Duration.ofMillis(batchPauseMillis);
+        this.compactedReports = Counter.builder("weather.retention.compacted")
+                .description("Weather reports rolled up into hourly rollups and deleted")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("weather.retention.run")
+                .description("Time to compact the weather history older than the retention window")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${weather-stack.retention.interval}", initialDelayString = "${weather-stack.retention.interval}")
+    public void compactHistory() {
+        runTimer.record(() -> {
+            // only whole hours are rolled up, so an hour is never split between the history and its rollup
+            LocalDateTime before = LocalDateTime.now(clock).minus(window).truncatedTo(ChronoUnit.HOURS);
+            int compacted = 0;
+            List<WeatherEntity> batch;
+            do {
+                batch = weatherRepository.findSupersededBefore(before, Limit.of(batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<WeatherEntity> reports = batch;
+                transactionTemplate.executeWithoutResult(status -> compact(reports));
+                compacted += batch.size();
+                compactedReports.increment(batch.size());
+            } while (batch.size() == batchSize && pause());
+
+            if (compacted > 0) {
+                logger.info("Compacted {} weather reports older than {} into hourly rollups", compacted, before);
+            }
+        });
+    }
+
+    private void compact(List<WeatherEntity> reports) {
+        Map<RollupKey, List<WeatherEntity>> reportsByHour = reports.stream()
+                .filter(report -> report.getTemperature() != null)
+                .collect(Collectors.groupingBy(report -> new RollupKey(report.getRequestedCityName(), report.getUpdatedTime().truncatedTo(ChronoUnit.HOURS))));
+
+        if (!reportsByHour.isEmpty()) {
+            Map<RollupKey, WeatherHourlyRollupEntity> rollups = new HashMap<>();
+            rollupRepository.findByRequestedCityNameInAndHourStartIn(
+                            reportsByHour.keySet().stream().map(RollupKey::city).collect(Collectors.toSet()),
+                            reportsByHour.keySet().stream().map(RollupKey::hour).collect(Collectors.toSet()))
+                    .forEach(rollup -> rollups.put(new RollupKey(rollup.getRequestedCityName(), rollup.getHourStart()), rollup));
+
+            List<WeatherHourlyRollupEntity> changed = new ArrayList<>(reportsByHour.size());
+            reportsByHour.forEach((key, hourReports) -> {
+                WeatherEntity sample = hourReports.get(0);
+                IntSummaryStatistics temperatures = hourReports.stream().mapToInt(WeatherEntity::getTemperature).summaryStatistics();
+                WeatherHourlyRollupEntity rollup = rollups.computeIfAbsent(key,
+                        k -> new WeatherHourlyRollupEntity(k.city(), sample.getCityName(), sample.getCountry(), k.hour()));
+                rollup.merge(temperatures.getMin(), temperatures.getMax(), temperatures.getSum(), (int) temperatures.getCount());
+                changed.add(rollup);
+            });
+            rollupRepository.saveAll(changed);
+        }
+        weatherRepository.deleteAllByIdInBatch(reports.stream().map(WeatherEntity::getId).filter(Objects::nonNull).toList());
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record RollupKey(String city, LocalDateTime hour) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherHistoryResponse;
+import com.example.weather.exception.InvalidHistoryQueryException;
+import com.example.weather.history.WeatherSeriesStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Service
+public class WeatherHistoryService {
+    private static final Duration DEFAULT_RANGE = Duration.ofDays(1);
+
+    private final WeatherSeriesStore seriesStore;
+    private final CityAliasIndex cityAliasIndex;
+    private final Clock clock;
+    private final int maxBuckets;
+
+    public WeatherHistoryService(WeatherSeriesStore seriesStore,
+                                 CityAliasIndex cityAliasIndex,
+                                 Clock clock,
+                                 @Value("${weather-stack.history.max-buckets}") int maxBuckets) {
+        this.seriesStore = seriesStore;
+        this.cityAliasIndex = cityAliasIndex;
+        this.clock = clock;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Temperature history of a city in [from, to), by default the last day. The range is split into buckets of
+     * bucketMinutes, at most weather-stack.history.max-buckets of them.
+     */
+    public WeatherHistoryResponse getHistory(String city, LocalDateTime from, LocalDateTime to, long bucketMinutes) {
+        LocalDateTime end = to == null ? LocalDateTime.now(clock) : to;
+        LocalDateTime start = from == null ? end.minus(DEFAULT_RANGE) : from;
+        if (!start.isBefore(end)) {
+            throw new InvalidHistoryQueryException(String.format("from (%s) must be before to (%s)", start, end));
+        }
+        Duration bucket = Duration.ofMinutes(bucketMinutes);
+        long buckets = Duration.between(start, end).dividedBy(bucket);
+        if (buckets > maxBuckets) {
+            throw new InvalidHistoryQueryException(String.format("The range has %d buckets of %d minutes, at most %d are allowed", buckets, bucketMinutes, maxBuckets));
+        }
+        return seriesStore.query(cityAliasIndex.resolve(city), start, end, bucket);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.location.WeatherLocationIndex;
+import com.example.weather.location.WeatherLocationIndex.LocatedWeather;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+import static com.example.weather.constants.Constants.API_CALL_LIMIT;
+
+@Service
+public class WeatherLocationService {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherLocationService.class);
+
+    private final WeatherLocationIndex locationIndex;
+    private final WeatherService weatherService;
+    private final Clock clock;
+    private final Counter indexHits;
+    private final Counter cityRefreshes;
+    private final Counter upstreamLookups;
+
+    public WeatherLocationService(WeatherLocationIndex locationIndex,
+                                  WeatherService weatherService,
+                                  Clock clock,
+                                  MeterRegistry meterRegistry) {
+        this.locationIndex = locationIndex;
+        this.weatherService = weatherService;
+        this.clock = clock;
+        this.indexHits = lookupCounter(meterRegistry, "index");
+        this.cityRefreshes = lookupCounter(meterRegistry, "city");
+        this.upstreamLookups = lookupCounter(meterRegistry, "coordinates");
+    }
+
+    /**
+     * Current weather at a point. An up-to-date report of a city within weather-stack.location.radius-km is served
+     * from the index. If the nearest city's report is outdated the city is looked up by its name, so all points
+     * around it share one weatherstack call. Only a point with no city around is sent to weatherstack as coordinates.
+     */
+    public WeatherDto getWeather(double latitude, double longitude) {
+        Optional<LocatedWeather> nearest = locationIndex.nearest(latitude, longitude);
+        if (nearest.isPresent()) {
+            LocatedWeather located = nearest.get();
+            if (!isOutdated(located.weather().updatedTime())) {
+                indexHits.increment();
+                return located.weather();
+            }
+            logger.debug("Nearest city {} to {},{} is outdated, looking it up by name", located.city(), latitude, longitude);
+            cityRefreshes.increment();
+            return weatherService.getWeather(located.city());
+        }
+        upstreamLookups.increment();
+        return weatherService.getWeather(coordinateQuery(latitude, longitude));
+    }
+
+    // rounded to about a kilometer, so nearby points that miss the index still share one cache entry
+    static String coordinateQuery(double latitude, double longitude) {
+        return String.format(Locale.ROOT, "%.2f,%.2f", latitude, longitude);
+    }
+
+    private boolean isOutdated(LocalDateTime updatedTime) {
+        return updatedTime.isBefore(LocalDateTime.now(clock).minusMinutes(API_CALL_LIMIT));
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("weather.location.lookup")
+                .description("Coordinate lookups by where they were answered from")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.weather.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs weather refreshes off the request thread. At most one refresh per city is queued or running,
+ * and the pool and its queue are bounded so a burst of stale cities can not pile up work.
+ */
+@Component
+public class WeatherRefreshExecutor implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherRefreshExecutor.class);
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final Set<String> refreshingCities = ConcurrentHashMap.newKeySet();
+
+    public WeatherRefreshExecutor(@Value("${weather-stack.refresh.pool-size}") int poolSize,
+                                  @Value("${weather-stack.refresh.queue-capacity}") int queueCapacity,
+                                  @Value("${spring.threads.virtual.enabled}") boolean virtualThreads) {
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("weather-refresh-");
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name("weather-refresh-", 0).factory());
+        }
+        executor.initialize();
+    }
+
+    public boolean submit(String city, Runnable refresh) {
+        if (!refreshingCities.add(city)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Background refresh failed for city: {}", city, e);
+                } finally {
+                    refreshingCities.remove(city);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            refreshingCities.remove(city);
+            logger.warn("Background refresh queue is full, skipped city: {}", city);
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -1,30 +1,53 @@
 package com.example.weather.service;
 
+import com.example.weather.client.WeatherStackClient;
+import com.example.weather.client.WeatherStackResponseDecoder;
+import com.example.weather.dto.BatchWeatherResult;
+import com.example.weather.dto.BatchWeatherResult.Status;
 import com.example.weather.dto.WeatherDto;
-import com.example.weather.dto.WeatherResponse;
-import com.example.weather.exception.ErrorResponse;
+import com.example.weather.dto.WeatherReading;
+import com.example.weather.exception.UpstreamQuotaExceededException;
 import com.example.weather.exception.WeatherStackApiException;
 import com.example.weather.model.WeatherEntity;
+import com.example.weather.quota.UpstreamQuota;
 import com.example.weather.repositroy.WeatherRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.annotation.PostConstruct;
+import com.example.weather.service.WeatherStageMetrics.Outcome;
+import com.example.weather.service.WeatherStageMetrics.Stage;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.example.weather.constants.Constants.*;
 
@@ -32,75 +55,436 @@ import static com.example.weather.constants.Constants.*;
 @CacheConfig(cacheNames = {"weathers"})
 public class WeatherService {
     private static final Logger logger = LoggerFactory.getLogger(WeatherService.class);
+    private static final DateTimeFormatter LOCAL_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     private final WeatherRepository weatherRepository;
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WeatherStackClient weatherStackClient;
+    private final WeatherStackResponseDecoder responseDecoder;
+    private final UpstreamRequestCoalescer requestCoalescer;
+    private final UpstreamQuota upstreamQuota;
+    private final WeatherWriteBehindQueue writeBehindQueue;
+    private final WeatherRefreshExecutor refreshExecutor;
+    private final HotCityTracker hotCityTracker;
+    private final CityAliasIndex cityAliasIndex;
+    private final NegativeWeatherCache negativeWeatherCache;
+    private final WeatherStageMetrics stageMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheManager cacheManager;
     private final Clock clock;
+    // decoding and saving an async weatherstack answer may block (alias and overflowing write-behind writes),
+    // so it runs on a virtual thread instead of the http client's I/O thread
+    private final Executor upstreamCompletionExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public WeatherService(WeatherRepository weatherRepository, RestTemplate restTemplate, Clock clock) {
+    public WeatherService(WeatherRepository weatherRepository,
+                          WeatherStackClient weatherStackClient,
+                          WeatherStackResponseDecoder responseDecoder,
+                          UpstreamRequestCoalescer requestCoalescer,
+                          UpstreamQuota upstreamQuota,
+                          WeatherWriteBehindQueue writeBehindQueue,
+                          WeatherRefreshExecutor refreshExecutor,
+                          HotCityTracker hotCityTracker,
+                          CityAliasIndex cityAliasIndex,
+                          NegativeWeatherCache negativeWeatherCache,
+                          WeatherStageMetrics stageMetrics,
+                          ApplicationEventPublisher eventPublisher,
+                          CacheManager cacheManager,
+                          Clock clock) {
         this.weatherRepository = weatherRepository;
-        this.restTemplate = restTemplate;
+        this.weatherStackClient = weatherStackClient;
+        this.responseDecoder = responseDecoder;
+        this.requestCoalescer = requestCoalescer;
+        this.upstreamQuota = upstreamQuota;
+        this.writeBehindQueue = writeBehindQueue;
+        this.refreshExecutor = refreshExecutor;
+        this.hotCityTracker = hotCityTracker;
+        this.cityAliasIndex = cityAliasIndex;
+        this.negativeWeatherCache = negativeWeatherCache;
+        this.stageMetrics = stageMetrics;
+        this.eventPublisher = eventPublisher;
+        this.cacheManager = cacheManager;
         this.clock = clock;
     }
 
-    @Cacheable(key = "#city")
     public WeatherDto getWeather(String city) {
-        logger.info("Requested city : " + city);
-        Optional<WeatherEntity> weatherEntityOptional = this.weatherRepository.findFirstByRequestedCityNameOrderByUpdatedTimeDesc(city);
+        logger.debug("Requested city : {}", city);
+        // every spelling of a city is looked up, loaded and stored under one key
+        String key = cityAliasIndex.resolve(city);
+        hotCityTracker.record(key);
 
-        return weatherEntityOptional.map(weather -> {
-            if (weather.getUpdatedTime().isBefore(getLocalDateTimeNow().minusMinutes(API_CALL_LIMIT))) {
-                logger.info(String.format("Creating a new city weather stack api for %s due to the current one is not up-to-date", city));
-                return createCityWeather(city);
+        // cache hits are counted by the hot city tracker too, so the cache is used directly instead of @Cacheable
+        Cache weatherCache = getWeatherCache();
+        long lookupStart = System.nanoTime();
+        WeatherDto cachedWeather = weatherCache.get(key, WeatherDto.class);
+        cityAliasIndex.recordLookup(city, key, cachedWeather != null);
+        if (cachedWeather != null) {
+            stageMetrics.record(Stage.CACHE, Outcome.CACHE_HIT, lookupStart);
+            return cachedWeather;
+        }
+        WeatherStageMetrics.Trace trace = stageMetrics.trace();
+        trace.end(Stage.CACHE, lookupStart);
+
+        try {
+            Optional<WeatherStackApiException> knownError = negativeWeatherCache.find(key);
+            if (knownError.isPresent()) {
+                throw knownError.get();
+            }
+            // the coalescer joins loads on this instance and the two level cache across instances. Neither runs
+            // the load inside a cache compute lock, so a blocked (virtual) thread is never pinned
+            return requestCoalescer.execute(key, () -> {
+                // answered by the shared tier, unless the loader runs and tells otherwise
+                trace.outcome(Outcome.CACHE_HIT);
+                return getOrLoad(weatherCache, key, () -> join(loadWeather(key, trace, upstreamCity -> supply(() -> createCityWeather(upstreamCity, trace)))));
+            });
+        } catch (RuntimeException e) {
+            trace.outcome(Outcome.ERROR);
+            throw e;
+        } finally {
+            trace.finish(Outcome.COALESCED);
+        }
+    }
+
+    /**
+     * Same lookup as {@link #getWeather(String)}, but no thread waits for weatherstack: the call is made with the
+     * non-blocking client and the report is decoded and saved when it answers. The freshness rules are the same,
+     * both go through {@link #loadWeather(String, WeatherStageMetrics.Trace, Function)}. Loads are coalesced with
+     * the blocking path on this instance; the two level cache is read and written, but its cross-instance load
+     * lock is not taken, since waiting for it would block. The stored report is still read and the quota token
+     * still taken on the calling thread, which is a Redis round trip with the Redis quota store.
+     */
+    public CompletableFuture<WeatherDto> getWeatherAsync(String city) {
+        logger.debug("Requested city : {}", city);
+        String key = cityAliasIndex.resolve(city);
+        hotCityTracker.record(key);
+
+        Cache weatherCache = getWeatherCache();
+        long lookupStart = System.nanoTime();
+        WeatherDto cachedWeather = weatherCache.get(key, WeatherDto.class);
+        cityAliasIndex.recordLookup(city, key, cachedWeather != null);
+        if (cachedWeather != null) {
+            stageMetrics.record(Stage.CACHE, Outcome.CACHE_HIT, lookupStart);
+            return CompletableFuture.completedFuture(cachedWeather);
+        }
+        WeatherStageMetrics.Trace trace = stageMetrics.trace();
+        trace.end(Stage.CACHE, lookupStart);
+
+        Optional<WeatherStackApiException> knownError = negativeWeatherCache.find(key);
+        CompletableFuture<WeatherDto> weather = knownError.<CompletableFuture<WeatherDto>>map(CompletableFuture::failedFuture)
+                .orElseGet(() -> requestCoalescer.executeAsync(key, () -> loadWeather(key, trace, upstreamCity -> createCityWeatherAsync(upstreamCity, trace))
+                        .thenApply(loaded -> {
+                            // a stale fallback would only replace the entry of a request that got a fresh report
+                            if (!isOutdated(loaded.updatedTime())) {
+                                weatherCache.put(key, loaded);
+                            }
+                            return loaded;
+                        })));
+        return weather.whenComplete((loaded, error) -> {
+            if (error != null) {
+                trace.outcome(Outcome.ERROR);
+            }
+            trace.finish(Outcome.COALESCED);
+        });
+    }
+
+    /**
+     * The freshness rules of a city that is not in the cache: an up-to-date stored report is served, an outdated one
+     * is refreshed with upstream (or served stale while it is refreshed in background), and it is served stale
+     * when weatherstack can not be called. upstream is the blocking or the non-blocking weatherstack call.
+     */
+    private CompletableFuture<WeatherDto> loadWeather(String city, WeatherStageMetrics.Trace trace,
+                                                      Function<String, CompletableFuture<WeatherDto>> upstream) {
+        // a report still waiting in the write-behind queue is newer than anything in the database
+        long repositoryStart = System.nanoTime();
+        Optional<WeatherDto> latestWeather = writeBehindQueue.pendingWeather(city)
+                .or(() -> this.weatherRepository.findLatestByRequestedCityName(city));
+        trace.end(Stage.REPOSITORY, repositoryStart);
+
+        if (latestWeather.isEmpty()) {
+            return upstream.apply(city);
+        }
+        WeatherDto weather = latestWeather.get();
+        if (!isOutdated(weather.updatedTime())) {
+            logger.debug("Getting weather from database for {} due to it is already up-to-date", city);
+            trace.outcome(Outcome.DB_HIT);
+            return CompletableFuture.completedFuture(weather);
+        }
+        if (Boolean.TRUE.equals(STALE_WHILE_REVALIDATE)) {
+            logger.debug("Serving stale weather for {} while it is refreshed in background", city);
+            trace.outcome(Outcome.STALE);
+            refreshInBackground(city);
+            return CompletableFuture.completedFuture(weather);
+        }
+        logger.debug("Creating a new city weather stack api for {} due to the current one is not up-to-date", city);
+        return upstream.apply(city).exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof UpstreamQuotaExceededException) {
+                logger.warn("Serving stale weather for {}, the weather stack quota is used up", city);
+                trace.outcome(Outcome.STALE);
+                return weather;
+            }
+            if (cause instanceof CallNotPermittedException || cause instanceof BulkheadFullException) {
+                // the caller sees the report's age in the Age and Warning headers
+                logger.warn("Serving stale weather for {}, weather stack is unavailable: {}", city, cause.getMessage());
+                trace.outcome(Outcome.STALE);
+                return weather;
+            }
+            throw error instanceof CompletionException completionException ? completionException : new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Resolves several cities with one cache pass, one database query for the cache misses
+     * and parallel weatherstack calls, capped by weather-stack.batch.max-concurrency, for the rest.
+     */
+    public List<BatchWeatherResult> getWeathers(List<String> cities) {
+        Cache weatherCache = getWeatherCache();
+        // requested names by their key, spellings of the same city are resolved once and share the result
+        Map<String, String> keys = new LinkedHashMap<>();
+        new LinkedHashSet<>(cities).forEach(city -> keys.put(city, cityAliasIndex.resolve(city)));
+
+        Map<String, BatchWeatherResult> results = new HashMap<>();
+        List<String> notCachedCities = new ArrayList<>();
+        for (Map.Entry<String, String> requested : keys.entrySet()) {
+            String city = requested.getValue();
+            if (results.containsKey(city) || notCachedCities.contains(city)) {
+                continue;
+            }
+            hotCityTracker.record(city);
+            WeatherDto cachedWeather = weatherCache.get(city, WeatherDto.class);
+            cityAliasIndex.recordLookup(requested.getKey(), city, cachedWeather != null);
+            if (cachedWeather != null) {
+                results.put(city, BatchWeatherResult.of(city, Status.CACHE, cachedWeather));
+            } else {
+                negativeWeatherCache.find(city).ifPresentOrElse(
+                        knownError -> results.put(city, BatchWeatherResult.error(city, knownError.getErrorResponse().error().info())),
+                        () -> notCachedCities.add(city));
+            }
+        }
+        if (notCachedCities.isEmpty()) {
+            return toRequestedCities(keys, results);
+        }
+
+        Map<String, WeatherEntity> latestWeathers = new HashMap<>();
+        this.weatherRepository.findLatestByRequestedCityNameIn(notCachedCities)
+                .forEach(weather -> latestWeathers.putIfAbsent(weather.getRequestedCityName(), weather));
+
+        // cities to fetch, with their outdated report to fall back to when the quota is used up
+        Map<String, WeatherDto> upstreamCities = new HashMap<>();
+        for (String city : notCachedCities) {
+            WeatherDto weather = writeBehindQueue.pendingWeather(city)
+                    .orElseGet(() -> latestWeathers.containsKey(city) ? WeatherDto.convert(latestWeathers.get(city)) : null);
+            if (weather != null && !isOutdated(weather.updatedTime())) {
+                weatherCache.put(city, weather);
+                results.put(city, BatchWeatherResult.of(city, Status.DATABASE, weather));
+            } else if (weather != null && Boolean.TRUE.equals(STALE_WHILE_REVALIDATE)) {
+                refreshInBackground(city);
+                results.put(city, BatchWeatherResult.of(city, Status.STALE, weather));
+            } else {
+                upstreamCities.put(city, weather);
             }
-            logger.info(String.format("Getting weather from database for %s due to it is already up-to-date", city));
-            return WeatherDto.convert(weather);
-        }).orElseGet(() -> createCityWeather(city));
+        }
+
+        Semaphore upstreamPermits = new Semaphore(BATCH_MAX_CONCURRENCY);
+        Map<String, Future<BatchWeatherResult>> upstreamResults = new HashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String city : upstreamCities.keySet()) {
+                upstreamResults.put(city, executor.submit(() -> {
+                    try {
+                        upstreamPermits.acquire();
+                    } catch (InterruptedException e) {
+                        // the batch request was interrupted before this city got its turn
+                        Thread.currentThread().interrupt();
+                        WeatherDto staleWeather = upstreamCities.get(city);
+                        return staleWeather == null
+                                ? BatchWeatherResult.error(city, "Weather lookup was interrupted")
+                                : BatchWeatherResult.of(city, Status.STALE, staleWeather);
+                    }
+                    try {
+                        return fetchBatchWeather(city, weatherCache, upstreamCities.get(city));
+                    } finally {
+                        upstreamPermits.release();
+                    }
+                }));
+            }
+        }
+        upstreamResults.forEach((city, result) -> results.put(city, result.resultNow()));
+        return toRequestedCities(keys, results);
+    }
+
+    private static List<BatchWeatherResult> toRequestedCities(Map<String, String> keys, Map<String, BatchWeatherResult> results) {
+        return keys.entrySet().stream()
+                .map(requested -> results.get(requested.getValue()).withCity(requested.getKey()))
+                .toList();
+    }
+
+    private BatchWeatherResult fetchBatchWeather(String city, Cache weatherCache, WeatherDto staleWeather) {
+        WeatherStageMetrics.Trace trace = stageMetrics.trace();
+        try {
+            WeatherDto weather = requestCoalescer.execute(city, () -> getOrLoad(weatherCache, city, () -> createCityWeather(city, trace)));
+            return BatchWeatherResult.of(city, Status.UPSTREAM, weather);
+        } catch (UpstreamQuotaExceededException | CallNotPermittedException | BulkheadFullException e) {
+            trace.outcome(staleWeather == null ? Outcome.ERROR : Outcome.STALE);
+            return staleWeather == null ? BatchWeatherResult.error(city, e.getMessage()) : BatchWeatherResult.of(city, Status.STALE, staleWeather);
+        } catch (WeatherStackApiException e) {
+            trace.outcome(Outcome.ERROR);
+            return BatchWeatherResult.error(city, e.getErrorResponse().error() == null ? null : e.getErrorResponse().error().info());
+        } catch (RuntimeException e) {
+            trace.outcome(Outcome.ERROR);
+            return BatchWeatherResult.error(city, e.getMessage());
+        } finally {
+            trace.finish(Outcome.COALESCED);
+        }
+    }
+
+    private boolean isOutdated(LocalDateTime updatedTime) {
+        return updatedTime.isBefore(getLocalDateTimeNow().minusMinutes(API_CALL_LIMIT));
     }
 
     @CachePut(key = "#city")
-    private WeatherDto createCityWeather(String city) {
-        logger.info("Requesting weather stack api for city: " + city);
-        String url = getWeatherStackUrl(city);
-        ResponseEntity<String> responseEntity = this.restTemplate.getForEntity(url, String.class);
+    private WeatherDto createCityWeather(String city, WeatherStageMetrics.Trace trace) {
+        upstreamQuota.acquire(city);
+        logger.debug("Requesting weather stack api for city: {}", city);
+        long upstreamStart = System.nanoTime();
+        byte[] responseBody;
+        try {
+            responseBody = join(this.weatherStackClient.getCurrentWeather(city));
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            // turned away before it reached weatherstack, an open circuit must not drain the bucket
+            upstreamQuota.refund(city);
+            throw e;
+        } finally {
+            trace.end(Stage.UPSTREAM, upstreamStart);
+        }
+        return storeWeather(city, responseBody, trace);
+    }
 
+    private CompletableFuture<WeatherDto> createCityWeatherAsync(String city, WeatherStageMetrics.Trace trace) {
         try {
-            WeatherResponse weatherResponse = objectMapper.readValue(responseEntity.getBody(), WeatherResponse.class);
-            return WeatherDto.convert(saveWeatherEntity(city, weatherResponse));
-        } catch (JsonProcessingException e) {
-            try {
-                ErrorResponse errorResponse = objectMapper.readValue(responseEntity.getBody(), ErrorResponse.class);
-                throw new WeatherStackApiException(errorResponse);
-            } catch (JsonProcessingException ex) {
-                throw new RuntimeException(ex.getMessage());
+            upstreamQuota.acquire(city);
+        } catch (UpstreamQuotaExceededException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        logger.debug("Requesting weather stack api for city: {}", city);
+        long upstreamStart = System.nanoTime();
+        return this.weatherStackClient.getCurrentWeather(city)
+                .whenComplete((responseBody, error) -> {
+                    trace.end(Stage.UPSTREAM, upstreamStart);
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof CallNotPermittedException || cause instanceof BulkheadFullException) {
+                        upstreamQuota.refund(city);
+                    }
+                })
+                .thenApplyAsync(responseBody -> storeWeather(city, responseBody, trace), upstreamCompletionExecutor);
+    }
+
+    private WeatherDto storeWeather(String city, byte[] responseBody, WeatherStageMetrics.Trace trace) {
+        long decodeStart = System.nanoTime();
+        WeatherReading weatherReading;
+        try {
+            weatherReading = responseDecoder.decode(responseBody);
+        } catch (WeatherStackApiException e) {
+            negativeWeatherCache.put(city, e);
+            throw e;
+        } finally {
+            trace.end(Stage.DECODE, decodeStart);
+        }
+
+        String canonicalName = cityAliasIndex.register(city, weatherReading.cityName(), weatherReading.country());
+        long saveStart = System.nanoTime();
+        WeatherDto weather = WeatherDto.convert(saveWeatherEntity(canonicalName, weatherReading));
+        trace.end(Stage.SAVE, saveStart);
+        trace.outcome(Outcome.UPSTREAM);
+        if (!canonicalName.equals(city)) {
+            // the next request for this spelling resolves to the canonical name, the caller keeps the spelling's entry
+            getWeatherCache().put(canonicalName, weather);
+        }
+        return weather;
+    }
+
+    private static <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.completedFuture(supplier.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static WeatherDto getOrLoad(Cache weatherCache, String city, Callable<WeatherDto> loader) {
+        try {
+            return weatherCache.get(city, loader);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
         }
     }
 
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The newest report this instance can see without calling weatherstack: the cache, which includes
+     * reports other instances stored in the shared tier, then the write-behind queue, then the database.
+     */
+    public Optional<WeatherDto> findLatestWeather(String city) {
+        return Optional.ofNullable(getWeatherCache().get(city, WeatherDto.class))
+                .or(() -> writeBehindQueue.pendingWeather(city))
+                .or(() -> this.weatherRepository.findLatestByRequestedCityName(city));
+    }
+
+    public Optional<Duration> getStaleAge(WeatherDto weather) {
+        Duration age = Duration.between(weather.updatedTime(), getLocalDateTimeNow());
+        return age.compareTo(Duration.ofMinutes(API_CALL_LIMIT)) > 0 ? Optional.of(age) : Optional.empty();
+    }
+
+    public void refreshInBackground(String city) {
+        refreshExecutor.submit(city, () -> {
+            WeatherStageMetrics.Trace trace = stageMetrics.trace();
+            try {
+                WeatherDto refreshed = requestCoalescer.execute(city, () -> createCityWeather(city, trace));
+                getWeatherCache().put(city, refreshed);
+            } catch (UpstreamQuotaExceededException e) {
+                logger.info("Skipped background refresh of {}, the weather stack quota is used up", city);
+            } catch (CallNotPermittedException | BulkheadFullException e) {
+                logger.info("Skipped background refresh of {}, weather stack is unavailable: {}", city, e.getMessage());
+            } finally {
+                trace.finish(Outcome.ERROR);
+            }
+        });
+    }
+
+    private Cache getWeatherCache() {
+        return Objects.requireNonNull(cacheManager.getCache(WEATHER_CACHE_NAME), "Weather cache is not configured");
+    }
+
     @CacheEvict(allEntries = true)
-    @PostConstruct
-    @Scheduled(fixedRateString = "${weather-stack.cache-ttl}")
     public void clearCache() {
         logger.info("Caches are cleared");
     }
 
-    private String getWeatherStackUrl(String city) {
-        return WEATHER_STACK_API_BASE_URL + WEATHER_STACK_API_ACCESS_KEY_PARAM + API_KEY + WEATHER_STACK_API_QUERY_PARAM + city;
-    }
-
-    private WeatherEntity saveWeatherEntity(String city, WeatherResponse weatherResponse) {
-        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        logger.info("Saved repository : " + city);
+    private WeatherEntity saveWeatherEntity(String city, WeatherReading weatherReading) {
+        logger.debug("Queued for repository : {}", city);
         WeatherEntity weatherEntity = new WeatherEntity(
                 city,
-                weatherResponse.location().name(),
-                weatherResponse.location().country(),
-                weatherResponse.current().temperature(),
+                weatherReading.cityName(),
+                weatherReading.country(),
+                weatherReading.temperature(),
                 getLocalDateTimeNow(),
-                LocalDateTime.parse(weatherResponse.location().localTime(), dateTimeFormatter));
+                LocalDateTime.parse(weatherReading.localTime(), LOCAL_TIME_FORMATTER),
+                weatherReading.latitude(),
+                weatherReading.longitude());
 
-        return this.weatherRepository.save(weatherEntity);
+        writeBehindQueue.enqueue(weatherEntity);
+        eventPublisher.publishEvent(new WeatherStoredEvent(weatherEntity));
+        return weatherEntity;
     }
 
     private LocalDateTime getLocalDateTimeNow() {
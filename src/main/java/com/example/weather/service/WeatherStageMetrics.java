@@ -0,0 +1,130 @@
+package com.example.weather.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers of the stages of a weather lookup, published as weather.stage{stage, outcome} with a percentile histogram.
+ * The outcome is how the lookup was answered in the end, so a stage can be compared across the paths it is on:
+ * the cache lookup of a cache hit against the cache lookup of a request that went on to weatherstack.
+ */
+@Component
+public class WeatherStageMetrics {
+
+    public enum Stage {
+        CACHE("cache", EnumSet.allOf(Outcome.class)),
+        REPOSITORY("repository", EnumSet.of(Outcome.DB_HIT, Outcome.STALE, Outcome.UPSTREAM, Outcome.ERROR)),
+        UPSTREAM("upstream", EnumSet.of(Outcome.UPSTREAM, Outcome.STALE, Outcome.ERROR)),
+        DECODE("decode", EnumSet.of(Outcome.UPSTREAM, Outcome.STALE, Outcome.ERROR)),
+        SAVE("save", EnumSet.of(Outcome.UPSTREAM, Outcome.STALE, Outcome.ERROR));
+
+        private final String tag;
+        // the outcomes a lookup that went through this stage can end with
+        private final Set<Outcome> outcomes;
+
+        Stage(String tag, Set<Outcome> outcomes) {
+            this.tag = tag;
+            this.outcomes = outcomes;
+        }
+    }
+
+    public enum Outcome {
+        CACHE_HIT("cache-hit"),
+        DB_HIT("db-hit"),
+        UPSTREAM("upstream"),
+        STALE("stale"),
+        COALESCED("coalesced"),
+        ERROR("error");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    // the timers of the reachable pairs are registered up front, so recording a stage never looks up or allocates
+    // a meter and every published series can have samples. Any other pair is registered on its first use
+    private final Timer[][] timers = new Timer[Stage.values().length][Outcome.values().length];
+
+    public WeatherStageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Stage stage : Stage.values()) {
+            for (Outcome outcome : stage.outcomes) {
+                timers[stage.ordinal()][outcome.ordinal()] = register(stage, outcome);
+            }
+        }
+    }
+
+    public void record(Stage stage, Outcome outcome, long startNanos) {
+        timer(stage, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(Stage stage, Outcome outcome) {
+        Timer timer = timers[stage.ordinal()][outcome.ordinal()];
+        if (timer == null) {
+            // the registry hands out the same timer for the same tags, so a racing registration is harmless
+            timer = register(stage, outcome);
+            timers[stage.ordinal()][outcome.ordinal()] = timer;
+        }
+        return timer;
+    }
+
+    private Timer register(Stage stage, Outcome outcome) {
+        return Timer.builder("weather.stage")
+                .description("Time spent in one stage of a weather lookup")
+                .tag("stage", stage.tag)
+                .tag("outcome", outcome.tag)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    public Trace trace() {
+        return new Trace();
+    }
+
+    /**
+     * Collects the stage times of one lookup until its outcome is known.
+     */
+    public class Trace {
+        private final long[] stageNanos = new long[Stage.values().length];
+        private Outcome outcome;
+
+        private Trace() {
+            Arrays.fill(stageNanos, -1);
+        }
+
+        public void end(Stage stage, long startNanos) {
+            int index = stage.ordinal();
+            stageNanos[index] = Math.max(stageNanos[index], 0) + System.nanoTime() - startNanos;
+        }
+
+        public void outcome(Outcome outcome) {
+            this.outcome = outcome;
+        }
+
+        public Outcome outcome() {
+            return outcome;
+        }
+
+        public void finish(Outcome defaultOutcome) {
+            Outcome finalOutcome = outcome == null ? defaultOutcome : outcome;
+            for (Stage stage : Stage.values()) {
+                long nanos = stageNanos[stage.ordinal()];
+                if (nanos >= 0) {
+                    timer(stage, finalOutcome).record(nanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+}
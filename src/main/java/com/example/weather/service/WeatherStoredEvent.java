@@ -0,0 +1,10 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherEntity;
+
+/**
+ * Published when a new weather report of a city is fetched from weatherstack and queued for the database.
+ * Listeners run on the thread that fetched it, so they must not block.
+ */
+public record WeatherStoredEvent(WeatherEntity weather) {
+}
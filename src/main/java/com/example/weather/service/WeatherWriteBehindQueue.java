@@ -0,0 +1,203 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persists weather reports off the request thread. Reports are queued and written with saveAll in JDBC batches
+ * once batch-size reports are waiting or flush-interval has passed since the first one. Until its batch is written,
+ * the latest queued report of a city is served by {@link #pendingWeather(String)}, so reads never go back in time.
+ * A batch that fails is retried max-attempts times with a doubling backoff, then queued again behind newer reports.
+ */
+@Component
+public class WeatherWriteBehindQueue implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherWriteBehindQueue.class);
+    // queued by destroy() after the last report, the writer stops when it takes it
+    private static final WeatherEntity STOP = new WeatherEntity();
+
+    private final WeatherRepository weatherRepository;
+    private final BlockingQueue<WeatherEntity> queue;
+    private final ConcurrentMap<String, WeatherEntity> pendingWeathers = new ConcurrentHashMap<>();
+    // enqueue holds the read lock from its running check to its offer, so no report is queued after STOP
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Timer flushTimer;
+    private final Counter failedFlushes;
+    private final Counter droppedWeathers;
+    private final Thread writer;
+    private boolean running = true;
+
+    public WeatherWriteBehindQueue(WeatherRepository weatherRepository,
+                                   @Value("${weather-stack.persistence.batch-size}") int batchSize,
+                                   @Value("${weather-stack.persistence.flush-interval}") long flushIntervalMillis,
+                                   @Value("${weather-stack.persistence.queue-capacity}") int queueCapacity,
+                                   @Value("${weather-stack.persistence.max-attempts}") int maxAttempts,
+                                   @Value("${weather-stack.persistence.retry-backoff}") long retryBackoffMillis,
+                                   MeterRegistry meterRegistry) {
+        this.weatherRepository = weatherRepository;
+        this.batchSize = batchSize;
+        this.flushInterval = Duration.ofMillis(flushIntervalMillis);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMillis);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.flushTimer = Timer.builder("weather.persist.flush")
+                .description("Time to write one batch of weather reports")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("weather.persist.failed")
+                .description("Batch writes that failed and were retried or queued again")
+                .register(meterRegistry);
+        this.droppedWeathers = Counter.builder("weather.persist.dropped")
+                .description("Weather reports given up on after every write attempt failed")
+                .register(meterRegistry);
+        Gauge.builder("weather.persist.pending", queue, BlockingQueue::size)
+                .description("Weather reports waiting to be written")
+                .register(meterRegistry);
+        this.writer = Thread.ofPlatform().name("weather-write-behind").daemon().start(this::writeLoop);
+    }
+
+    public void enqueue(WeatherEntity weather) {
+        pendingWeathers.put(weather.getRequestedCityName(), weather);
+        lifecycleLock.readLock().lock();
+        try {
+            if (running && queue.offer(weather)) {
+                return;
+            }
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+        // the writer can not keep up (or is stopping), so the caller pays for the write instead of losing it
+        logger.warn("Write-behind queue does not accept weather of {}, saving it on the caller thread", weather.getRequestedCityName());
+        write(List.of(weather), 1, false);
+    }
+
+    public Optional<WeatherDto> pendingWeather(String city) {
+        return Optional.ofNullable(pendingWeathers.get(city)).map(WeatherDto::convert);
+    }
+
+    private void writeLoop() {
+        List<WeatherEntity> batch = new ArrayList<>(batchSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                queue.drainTo(batch, batchSize - batch.size());
+                while (batch.size() < batchSize && !batch.contains(STOP)) {
+                    WeatherEntity next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopping = true;
+            } finally {
+                // batches queued again after a failure may follow STOP, they are left to destroy()
+                stopping |= batch.remove(STOP);
+                if (!batch.isEmpty()) {
+                    write(batch, maxAttempts, !stopping);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the batch, retrying a failed saveAll up to maxAttempts times. A batch that still fails is queued again
+     * when requeue is set and there is room, otherwise it is given up on.
+     */
+    private void write(List<WeatherEntity> batch, int maxAttempts, boolean requeue) {
+        Duration backoff = retryBackoff;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flushTimer.record(() -> weatherRepository.saveAll(List.copyOf(batch)));
+                logger.debug("Saved {} weather reports", batch.size());
+                batch.forEach(weather -> pendingWeathers.remove(weather.getRequestedCityName(), weather));
+                return;
+            } catch (RuntimeException e) {
+                failedFlushes.increment();
+                if (attempt >= maxAttempts) {
+                    logger.warn("Could not save {} weather reports after {} attempts", batch.size(), attempt, e);
+                    break;
+                }
+                logger.warn("Could not save {} weather reports, attempt {} of {}: {}", batch.size(), attempt, maxAttempts, e.getMessage());
+            }
+            if (!sleep(backoff)) {
+                break;
+            }
+            backoff = backoff.multipliedBy(2);
+        }
+
+        for (WeatherEntity weather : batch) {
+            if (!requeue || !queue.offer(weather)) {
+                logger.error("Dropped the weather report of {}, it could not be saved", weather.getRequestedCityName());
+                droppedWeathers.increment();
+                pendingWeathers.remove(weather.getRequestedCityName(), weather);
+            }
+        }
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Stops the writer once it has saved everything queued before this call, then saves the batches it queued
+     * again after failures. The writer is never interrupted, so a saveAll in progress completes. Runs before the
+     * repository and the data source are closed, since this bean depends on them.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        lifecycleLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+        queue.put(STOP);
+        writer.join();
+
+        List<WeatherEntity> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            write(remaining.subList(i, Math.min(i + batchSize, remaining.size())), maxAttempts, false);
+        }
+        logger.info("Write-behind queue drained, wrote {} weather reports queued again after a failure", remaining.size());
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.weather.stream;
+
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.cache.WeatherResponseCache.EncodedWeather;
+import com.example.weather.dto.BatchWeatherResult;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.exception.TooManySubscribersException;
+import com.example.weather.service.CityAliasIndex;
+import com.example.weather.service.WeatherService;
+import com.example.weather.service.WeatherStoredEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes every new weather report to the event streams subscribed to its city. A report is encoded once and the
+ * same event is queued for all of its subscribers. The queues are written out by a pool of sender-threads threads,
+ * each queue by one thread at a time, and queues waiting for a thread line up in the pool's queue, at most one drain
+ * per subscriber. The pool is bounded, so a fan-out to thousands of subscribers does not start thousands of threads.
+ * They are platform threads: ResponseBodyEmitter.send is synchronized, so a blocked write would pin the carrier of a
+ * virtual thread. A subscriber whose queue is full, or whose write has not returned within write-timeout ms, does not
+ * keep up and is dropped, so one slow client never holds back the others for long.
+ * Reports are pushed by the instance that fetched them from weatherstack.
+ */
+@Component
+public class WeatherBroadcaster implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherBroadcaster.class);
+    private static final String WEATHER_EVENT = "weather";
+    private static final String ERROR_EVENT = "error";
+
+    private final ConcurrentMap<String, Set<WeatherSubscriber>> subscribersByCity = new ConcurrentHashMap<>();
+    private final Set<WeatherSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final WeatherService weatherService;
+    private final CityAliasIndex cityAliasIndex;
+    private final WeatherResponseCache responseCache;
+    private final ThreadPoolExecutor senders;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    private final long writeTimeoutNanos;
+    private final Counter sentEvents;
+    private final Counter slowSubscribers;
+    private final Counter closedSubscribers;
+
+    public WeatherBroadcaster(WeatherService weatherService,
+                              CityAliasIndex cityAliasIndex,
+                              WeatherResponseCache responseCache,
+                              MeterRegistry meterRegistry,
+                              @Value("${weather-stack.stream.buffer-size}") int bufferSize,
+                              @Value("${weather-stack.stream.max-subscribers}") int maxSubscribers,
+                              @Value("${weather-stack.stream.timeout}") long timeoutMillis,
+                              @Value("${weather-stack.stream.write-timeout}") long writeTimeoutMillis,
+                              @Value("${weather-stack.stream.sender-threads}") int senderThreads) {
+        this.weatherService = weatherService;
+        this.cityAliasIndex = cityAliasIndex;
+        this.responseCache = responseCache;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeoutMillis;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        // drains are serialized per subscriber, so the queue holds at most a drain and a completion per subscriber
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("weather-stream-"));
+        this.senders.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("weather.stream.subscribers", subscribers, Set::size)
+                .description("Open weather event streams")
+                .register(meterRegistry);
+        Gauge.builder("weather.stream.queued", senders, executor -> executor.getQueue().size())
+                .description("Weather event streams waiting for a sender thread")
+                .register(meterRegistry);
+        this.sentEvents = Counter.builder("weather.stream.events")
+                .description("Events written to weather event streams")
+                .register(meterRegistry);
+        this.slowSubscribers = Counter.builder("weather.stream.dropped")
+                .description("Weather event streams closed by the server")
+                .tag("reason", "slow")
+                .register(meterRegistry);
+        this.closedSubscribers = Counter.builder("weather.stream.dropped")
+                .description("Weather event streams closed by the server")
+                .tag("reason", "closed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens an event stream for the cities. The current report of each city is sent first, a city that can not
+     * be resolved gets an error event and is not subscribed to. If no city can be resolved the stream ends.
+     */
+    public SseEmitter subscribe(List<String> cities) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new TooManySubscribersException(maxSubscribers);
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        List<Set<DataWithMediaType>> initialEvents = new ArrayList<>();
+        for (BatchWeatherResult result : weatherService.getWeathers(cities)) {
+            if (result.status() == BatchWeatherResult.Status.ERROR) {
+                initialEvents.add(errorEvent(result));
+            } else if (keys.add(cityAliasIndex.resolve(result.city()))) {
+                initialEvents.add(weatherEvent(result.weather()));
+            }
+        }
+
+        SseEmitter emitter = newEmitter();
+        if (keys.isEmpty()) {
+            // nothing to subscribe to, the errors are sent once the response is ready and the stream ends
+            for (Set<DataWithMediaType> event : initialEvents) {
+                sendEarly(emitter, event);
+            }
+            emitter.complete();
+            return emitter;
+        }
+        WeatherSubscriber subscriber = new WeatherSubscriber(emitter, Set.copyOf(keys), bufferSize + initialEvents.size());
+        initialEvents.forEach(subscriber::offer);
+        // added before the limit is checked again, so concurrent subscribes can not all pass it
+        subscribers.add(subscriber);
+        if (subscribers.size() > maxSubscribers) {
+            subscribers.remove(subscriber);
+            throw new TooManySubscribersException(maxSubscribers);
+        }
+        keys.forEach(city -> subscribersByCity.compute(city, (key, citySubscribers) -> {
+            Set<WeatherSubscriber> updated = citySubscribers == null ? ConcurrentHashMap.newKeySet() : citySubscribers;
+            updated.add(subscriber);
+            return updated;
+        }));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        if (subscriber.isClosed()) {
+            // unsubscribed before it was added to all of its cities, e.g. on shutdown
+            subscribers.remove(subscriber);
+            removeFromCities(subscriber);
+            return emitter;
+        }
+        schedule(subscriber);
+        logger.debug("Weather stream opened for {}", keys);
+        return emitter;
+    }
+
+    @EventListener
+    public void onWeatherStored(WeatherStoredEvent event) {
+        Set<WeatherSubscriber> citySubscribers = subscribersByCity.get(event.weather().getRequestedCityName());
+        if (citySubscribers == null || citySubscribers.isEmpty()) {
+            return;
+        }
+        Set<DataWithMediaType> weatherEvent = weatherEvent(WeatherDto.convert(event.weather()));
+        citySubscribers.forEach(subscriber -> publish(subscriber, weatherEvent));
+    }
+
+    /**
+     * Keeps idle streams open through proxies and finds the clients that went away without closing them.
+     */
+    @Scheduled(fixedRateString = "${weather-stack.stream.heartbeat}", initialDelayString = "${weather-stack.stream.heartbeat}")
+    public void sendHeartbeats() {
+        Set<DataWithMediaType> heartbeat = SseEmitter.event().comment("heartbeat").build();
+        subscribers.forEach(subscriber -> publish(subscriber, heartbeat));
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void publish(WeatherSubscriber subscriber, Set<DataWithMediaType> event) {
+        if (!subscriber.offer(event) || subscriber.isWriteStalled(writeTimeoutNanos)) {
+            if (subscriber.detach()) {
+                slowSubscribers.increment();
+                logger.info("Dropped a weather stream of {}, its client does not keep up", subscriber.cities());
+                // ending the response waits for a write in progress, so it is left to a sender thread
+                complete(subscriber);
+            }
+            unsubscribe(subscriber);
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    private void schedule(WeatherSubscriber subscriber) {
+        if (subscriber.markScheduled()) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private void send(WeatherSubscriber subscriber) {
+        try {
+            sentEvents.increment(subscriber.drain());
+        } catch (IOException | IllegalStateException e) {
+            // the client went away, or the response was completed while its events were written
+            if (subscriber.close()) {
+                closedSubscribers.increment();
+                logger.debug("Closed a weather stream of {}: {}", subscriber.cities(), e.getMessage());
+            }
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void complete(WeatherSubscriber subscriber) {
+        try {
+            senders.execute(subscriber::complete);
+        } catch (RejectedExecutionException e) {
+            // shutting down, the container ends the response
+        }
+    }
+
+    private static void sendEarly(SseEmitter emitter, Set<DataWithMediaType> event) {
+        try {
+            emitter.send(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void unsubscribe(WeatherSubscriber subscriber) {
+        subscriber.detach();
+        if (subscribers.remove(subscriber)) {
+            removeFromCities(subscriber);
+        }
+    }
+
+    private void removeFromCities(WeatherSubscriber subscriber) {
+        subscriber.cities().forEach(city -> subscribersByCity.computeIfPresent(city, (key, citySubscribers) -> {
+            citySubscribers.remove(subscriber);
+            return citySubscribers.isEmpty() ? null : citySubscribers;
+        }));
+    }
+
+    private Set<DataWithMediaType> weatherEvent(WeatherDto weather) {
+        EncodedWeather encoded = responseCache.encode(weather);
+        return SseEmitter.event()
+                .name(WEATHER_EVENT)
+                .id(encoded.eTag().replace("\"", ""))
+                .data(encoded.body(), MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    private static Set<DataWithMediaType> errorEvent(BatchWeatherResult result) {
+        return SseEmitter.event()
+                .name(ERROR_EVENT)
+                .data(result, MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.forEach(subscriber -> {
+            if (subscriber.detach()) {
+                complete(subscriber);
+            }
+            unsubscribe(subscriber);
+        });
+        senders.shutdown();
+    }
+}
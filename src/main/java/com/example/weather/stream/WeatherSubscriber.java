@@ -0,0 +1,118 @@
+package com.example.weather.stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One open event stream. Events wait in a bounded queue and are written by at most one sender task at a time,
+ * so a client that reads slowly only fills its own queue. The start of the write in progress is kept, so a
+ * client whose write blocks can be told from one that is idle.
+ */
+final class WeatherSubscriber {
+    private final SseEmitter emitter;
+    private final Set<String> cities;
+    private final BlockingQueue<Set<DataWithMediaType>> pending;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // System.nanoTime() when the write in progress started, 0 when no event is being written
+    private volatile long writeStartNanos;
+
+    WeatherSubscriber(SseEmitter emitter, Set<String> cities, int bufferSize) {
+        this.emitter = emitter;
+        this.cities = cities;
+        this.pending = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    Set<String> cities() {
+        return cities;
+    }
+
+    /**
+     * @return false if the queue is full, the client does not keep up with its events
+     */
+    boolean offer(Set<DataWithMediaType> event) {
+        return pending.offer(event);
+    }
+
+    /**
+     * @return true if the caller has to schedule {@link #drain()}, false if a sender task is already on it
+     */
+    boolean markScheduled() {
+        return !closed.get() && scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Writes the queued events, then checks the queue once more after clearing the flag, so an event
+     * offered while the last one was written is not left behind.
+     *
+     * @return the number of events written
+     */
+    int drain() throws IOException {
+        int sent = 0;
+        do {
+            Set<DataWithMediaType> event;
+            while (!closed.get() && (event = pending.poll()) != null) {
+                writeStartNanos = System.nanoTime();
+                try {
+                    emitter.send(event);
+                } finally {
+                    writeStartNanos = 0;
+                }
+                sent++;
+            }
+            scheduled.set(false);
+        } while (!closed.get() && !pending.isEmpty() && scheduled.compareAndSet(false, true));
+        return sent;
+    }
+
+    /**
+     * @return true if an event has been written for longer than timeoutNanos, the client does not read it
+     */
+    boolean isWriteStalled(long timeoutNanos) {
+        long start = writeStartNanos;
+        return start != 0 && System.nanoTime() - start > timeoutNanos;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Ends the response, waits for a write in progress to return.
+     */
+    void complete() {
+        emitter.complete();
+    }
+
+    /**
+     * Stops sending and ends the response.
+     *
+     * @return true for the first call of close or detach only
+     */
+    boolean close() {
+        boolean first = detach();
+        if (first) {
+            complete();
+        }
+        return first;
+    }
+
+    /**
+     * Stops sending, for a response that is already completed, timed out or failed.
+     *
+     * @return true for the first call of close or detach only
+     */
+    boolean detach() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        pending.clear();
+        return true;
+    }
+}
@@ -2,15 +2,16 @@ package com.example.weather;
 
 import com.example.weather.model.WeatherEntity;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
 
 public class TestSupport {
 
     public static final String WEATHER_API_ENDPOINT = "/v1/api/open-weather";
-    public final String WEATHER_STACK_API_BASE_URL = "weather-base-api-url?access_key=api-key&query=";
 
     public static DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
@@ -27,6 +28,10 @@ public class TestSupport {
         return LocalDateTime.ofInstant(getCurrentInstant(), Clock.systemDefaultZone().getZone());
     }
 
+    public CompletableFuture<byte[]> completedFuture(String responseJson) {
+        return CompletableFuture.completedFuture(responseJson.getBytes(StandardCharsets.UTF_8));
+    }
+
     public WeatherEntity getSavedWeatherEntity(String responseLocalTime) {
         return new WeatherEntity(
                 "id",
@@ -98,4 +103,18 @@ public class TestSupport {
                 }
                 """;
     }
+
+    public String getUnknownCityResponseJson() {
+        // language=json
+        return """
+                {
+                    "success": false,
+                    "error": {
+                        "code": 615,
+                        "type": "request_failed",
+                        "info": "Your API request failed. Please try again or contact support."
+                    }
+                }
+                """;
+    }
 }
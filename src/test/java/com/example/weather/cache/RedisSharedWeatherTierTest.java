@@ -0,0 +1,134 @@
+package com.example.weather.cache;
+
+import com.example.weather.TestSupport;
+import com.example.weather.config.ObjectMapperConfig;
+import com.example.weather.dto.WeatherDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class RedisSharedWeatherTierTest extends TestSupport {
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOperations;
+    private RedisMessageListenerContainer listenerContainer;
+    private RedisSharedWeatherTier sharedTier;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        listenerContainer = mock(RedisMessageListenerContainer.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        sharedTier = new RedisSharedWeatherTier(redisTemplate, listenerContainer, new ObjectMapperConfig().objectMapper());
+    }
+
+    @Test
+    void testPutThenGet_shouldStoreReportUnderCityKeyWithTimeToLiveAndKeepUpdatedTimeExact() {
+        // seconds are dropped by WeatherDto's json format, the shared copy has to keep them
+        WeatherDto weather = new WeatherDto("Antalya", "Turkey", 18, LocalDateTime.of(2023, 5, 19, 12, 30, 45));
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+
+        sharedTier.put(requestedCity, weather, Duration.ofMinutes(10));
+
+        verify(valueOperations).set(eq("weather:cache:Antalya"), json.capture(), eq(Duration.ofMinutes(10)));
+        when(valueOperations.get("weather:cache:Antalya")).thenReturn(json.getValue());
+        assertEquals(Optional.of(weather), sharedTier.get(requestedCity));
+    }
+
+    @Test
+    void testGet_whenCityIsNotStored_shouldReturnEmpty() {
+        assertEquals(Optional.empty(), sharedTier.get(requestedCity));
+    }
+
+    @Test
+    void testTryLock_shouldSetLockKeyIfAbsentWithLeaseAndReturnItsToken() {
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        when(valueOperations.setIfAbsent(eq("weather:lock:Antalya"), token.capture(), eq(Duration.ofSeconds(10)))).thenReturn(true, false);
+
+        Optional<String> acquired = sharedTier.tryLock(requestedCity, Duration.ofSeconds(10));
+        Optional<String> held = sharedTier.tryLock(requestedCity, Duration.ofSeconds(10));
+
+        assertEquals(Optional.of(token.getAllValues().get(0)), acquired);
+        assertEquals(Optional.empty(), held);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUnlock_shouldDeleteLockKeyOnlyForItsToken() {
+        sharedTier.unlock(requestedCity, "token");
+
+        ArgumentCaptor<RedisScript<Long>> script = ArgumentCaptor.forClass(RedisScript.class);
+        verify(redisTemplate).execute(script.capture(), eq(List.of("weather:lock:Antalya")), eq("token"));
+        assertTrue(script.getValue().getScriptAsString().contains("redis.call('get', KEYS[1]) == ARGV[1]"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testClear_shouldDeleteScannedWeatherKeysOnly() {
+        Cursor<String> cursor = mock(Cursor.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+        List<String> keys = List.of("weather:cache:Antalya", "weather:cache:Izmir");
+        doReturn(true, true, false).when(cursor).hasNext();
+        doReturn(keys.get(0), keys.get(1)).when(cursor).next();
+        doNothing().when(cursor).close();
+        ArgumentCaptor<ScanOptions> scanOptions = ArgumentCaptor.forClass(ScanOptions.class);
+        when(redisTemplate.scan(scanOptions.capture())).thenReturn(cursor);
+
+        sharedTier.clear();
+
+        assertEquals("weather:cache:*", scanOptions.getValue().getPattern());
+        verify(redisTemplate).delete(keys);
+        verify(cursor).close();
+    }
+
+    @Test
+    void testPublishAndSubscribe_shouldCarryInvalidationsOverTheChannel() {
+        List<CacheInvalidation> received = new ArrayList<>();
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        sharedTier.subscribe(received::add);
+        verify(listenerContainer).addMessageListener(listener.capture(), eq(ChannelTopic.of("weather:invalidation")));
+
+        CacheInvalidation invalidation = new CacheInvalidation("node", requestedCity);
+        sharedTier.publish(invalidation);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq("weather:invalidation"), message.capture());
+
+        listener.getValue().onMessage(message("{not json"), null);
+        listener.getValue().onMessage(message(message.getValue()), null);
+
+        // a message that can not be read is skipped, the listener keeps working
+        assertEquals(List.of(invalidation), received);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("weather:invalidation".getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
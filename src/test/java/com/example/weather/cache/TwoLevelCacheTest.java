@@ -0,0 +1,179 @@
+package com.example.weather.cache;
+
+import com.example.weather.TestSupport;
+import com.example.weather.config.WeatherCacheExpiry;
+import com.example.weather.dto.WeatherDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TwoLevelCacheTest extends TestSupport {
+
+    private LocalSharedWeatherTier sharedTier;
+    private ConcurrentMapCache firstNearCache;
+    private ConcurrentMapCache secondNearCache;
+    private TwoLevelCache firstNode;
+    private TwoLevelCache secondNode;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(getCurrentInstant(), Clock.systemDefaultZone().getZone());
+        WeatherCacheExpiry expiry = new WeatherCacheExpiry(30, clock);
+        sharedTier = new LocalSharedWeatherTier(clock, 100);
+        firstNearCache = new ConcurrentMapCache("weathers");
+        secondNearCache = new ConcurrentMapCache("weathers");
+        firstNode = new TwoLevelCache(firstNearCache, sharedTier, expiry, "first", Duration.ofSeconds(10), Duration.ofSeconds(5), Duration.ofMillis(10));
+        secondNode = new TwoLevelCache(secondNearCache, sharedTier, expiry, "second", Duration.ofSeconds(10), Duration.ofSeconds(5), Duration.ofMillis(10));
+    }
+
+    @Test
+    void testGet_whenAnotherNodeStoredCity_shouldReturnItFromSharedTierAndKeepItInNearCache() {
+        WeatherDto weather = weather(18);
+        firstNode.put(requestedCity, weather);
+
+        assertEquals(weather, secondNode.get(requestedCity, WeatherDto.class));
+        assertEquals(weather, secondNearCache.get(requestedCity, WeatherDto.class));
+    }
+
+    @Test
+    void testPut_whenAnotherNodeRefreshesCity_shouldInvalidateNearCacheOfThisNode() {
+        firstNode.put(requestedCity, weather(18));
+        secondNode.get(requestedCity);
+
+        WeatherDto refreshed = weather(21);
+        firstNode.put(requestedCity, refreshed);
+
+        assertNull(secondNearCache.get(requestedCity));
+        assertEquals(refreshed, secondNode.get(requestedCity, WeatherDto.class));
+    }
+
+    @Test
+    void testPut_whenReportIsOutdated_shouldNotShareIt() {
+        firstNode.put(requestedCity, new WeatherDto("Antalya", "Turkey", 18, getCurrentLocalDateTime().minusMinutes(45)));
+
+        assertTrue(sharedTier.get(requestedCity).isEmpty());
+        assertNull(secondNode.get(requestedCity));
+    }
+
+    @Test
+    void testGet_whenBothNodesLoadSameCity_shouldLoadItOnceAcrossNodes() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+
+        CompletableFuture<WeatherDto> first = CompletableFuture.supplyAsync(() -> firstNode.get(requestedCity, () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            releaseLoader.await(5, TimeUnit.SECONDS);
+            return weather(18);
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<WeatherDto> second = CompletableFuture.supplyAsync(() -> secondNode.get(requestedCity, () -> {
+            loads.incrementAndGet();
+            return weather(25);
+        }));
+        releaseLoader.countDown();
+
+        assertEquals(weather(18), first.get(5, TimeUnit.SECONDS));
+        assertEquals(weather(18), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testGet_whenLockHolderFailsToLoad_shouldLoadOnWaitingNodeWithoutWaitingOutLockWait() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+
+        CompletableFuture<WeatherDto> first = CompletableFuture.supplyAsync(() -> firstNode.get(requestedCity, () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            releaseLoader.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("weather stack is unavailable");
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        CompletableFuture<WeatherDto> second = CompletableFuture.supplyAsync(() -> secondNode.get(requestedCity, () -> {
+            loads.incrementAndGet();
+            return weather(25);
+        }));
+        releaseLoader.countDown();
+
+        assertEquals(weather(25), second.get(5, TimeUnit.SECONDS));
+        // the lock wait is 5 seconds, the waiter took over as soon as the lock was released
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGet_whenLockHolderLoadsOutdatedReport_shouldLoadOnWaitingNodeOnceLockIsReleased() throws Exception {
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        WeatherDto outdated = new WeatherDto("Antalya", "Turkey", 18, getCurrentLocalDateTime().minusMinutes(45));
+
+        CompletableFuture<WeatherDto> first = CompletableFuture.supplyAsync(() -> firstNode.get(requestedCity, () -> {
+            loaderStarted.countDown();
+            releaseLoader.await(5, TimeUnit.SECONDS);
+            return outdated;
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        CompletableFuture<WeatherDto> second = CompletableFuture.supplyAsync(() -> secondNode.get(requestedCity, () -> weather(25)));
+        releaseLoader.countDown();
+
+        assertEquals(outdated, first.get(5, TimeUnit.SECONDS));
+        assertEquals(weather(25), second.get(5, TimeUnit.SECONDS));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+    }
+
+    @Test
+    void testPut_whenSharedTierIsFull_shouldEvictToItsMaximumSize() {
+        Clock clock = Clock.fixed(getCurrentInstant(), Clock.systemDefaultZone().getZone());
+        LocalSharedWeatherTier boundedTier = new LocalSharedWeatherTier(clock, 10);
+
+        for (int i = 0; i < 100; i++) {
+            boundedTier.put("city-" + i, weather(i), Duration.ofMinutes(10));
+        }
+
+        // caffeine evicts in the background, shortly after the puts
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        long kept;
+        do {
+            kept = IntStream.range(0, 100).filter(i -> boundedTier.get("city-" + i).isPresent()).count();
+        } while (kept > 10 && System.nanoTime() < deadline);
+        assertTrue(kept <= 10, "kept " + kept + " reports");
+    }
+
+    @Test
+    void testClear_shouldClearSharedTierAndNearCachesOfOtherNodes() {
+        firstNode.put(requestedCity, weather(18));
+        secondNode.get(requestedCity);
+
+        firstNode.clear();
+
+        assertTrue(secondNearCache.getNativeCache().isEmpty());
+        assertNull(secondNode.get(requestedCity));
+    }
+
+    private WeatherDto weather(int temperature) {
+        return new WeatherDto("Antalya", "Turkey", temperature, getCurrentLocalDateTime().minusMinutes(1));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.weather.client;
+
+import com.example.weather.TestSupport;
+import com.example.weather.config.WeatherStackClientConfig;
+import com.example.weather.constants.Constants;
+import com.example.weather.exception.RestServiceException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeatherStackClientTest extends TestSupport {
+
+    private HttpServer stubServer;
+    private CloseableHttpAsyncClient httpClient;
+    private SimpleMeterRegistry meterRegistry;
+    private CircuitBreaker circuitBreaker;
+    private WeatherStackClient weatherStackClient;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch releaseSlowResponse = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stubServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubServer.setExecutor(Executors.newCachedThreadPool());
+        stubServer.createContext("/current", this::handle);
+        stubServer.start();
+
+        Constants constants = new Constants();
+        constants.setWeatherStackApiBaseUrl("http://localhost:" + stubServer.getAddress().getPort() + "/current");
+        constants.setApiKey("api-key");
+
+        meterRegistry = new SimpleMeterRegistry();
+        WeatherStackClientConfig config = new WeatherStackClientConfig();
+        httpClient = config.weatherStackHttpClient(config.weatherStackConnectionManager(2, 1000, meterRegistry), 1000, 500, 30000);
+        circuitBreaker = CircuitBreaker.of("weatherstack", CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .ignoreExceptions(BulkheadFullException.class)
+                .build());
+        Bulkhead bulkhead = Bulkhead.of("weatherstack", BulkheadConfig.custom().maxConcurrentCalls(2).maxWaitDuration(Duration.ZERO).build());
+        TimeLimiter timeLimiter = TimeLimiter.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(2)).build());
+        weatherStackClient = new WeatherStackClient(httpClient, circuitBreaker, bulkhead, timeLimiter, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        releaseSlowResponse.countDown();
+        httpClient.close();
+        weatherStackClient.destroy();
+        stubServer.stop(0);
+    }
+
+    @Test
+    void testGetCurrentWeather_shouldReturnBodyAndReusePooledConnection() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            byte[] body = weatherStackClient.getCurrentWeather("New York").get(5, TimeUnit.SECONDS);
+            assertEquals("access_key=api-key&query=New York", new String(body, StandardCharsets.UTF_8));
+            awaitConnectionReleased();
+        }
+
+        assertEquals(1, clientPorts.size());
+        assertEquals(0.0, meterRegistry.get("weather.upstream.inflight").gauge().value());
+        assertEquals(2.0, meterRegistry.get("weather.upstream.pool.connections").tag("state", "max").gauge().value());
+    }
+
+    @Test
+    void testGetCurrentWeather_whenServerReturnsError_shouldFailWithRestServiceException() {
+        CompletableFuture<byte[]> response = weatherStackClient.getCurrentWeather("error");
+
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RestServiceException.class);
+    }
+
+    @Test
+    void testGetCurrentWeather_whenResponseIsSlowerThanResponseTimeout_shouldFail() {
+        CompletableFuture<byte[]> response = weatherStackClient.getCurrentWeather("slow");
+
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RestServiceException.class);
+    }
+
+    @Test
+    void testGetCurrentWeather_whenInFlightLimitReached_shouldFailWithoutSendingRequest() {
+        weatherStackClient.getCurrentWeather("slow");
+        weatherStackClient.getCurrentWeather("slow");
+
+        CompletableFuture<byte[]> response = weatherStackClient.getCurrentWeather("Antalya");
+
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(BulkheadFullException.class);
+        assertEquals(2.0, meterRegistry.get("weather.upstream.inflight").gauge().value());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void testGetCurrentWeather_whenCallsKeepFailing_shouldOpenCircuitAndFailWithoutSendingRequest() {
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<byte[]> response = weatherStackClient.getCurrentWeather("error");
+            assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(RestServiceException.class);
+        }
+        int requestsSent = clientPorts.size();
+
+        CompletableFuture<byte[]> response = weatherStackClient.getCurrentWeather("Antalya");
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertThat(response).isCompletedExceptionally();
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(CallNotPermittedException.class);
+        assertEquals(requestsSent, clientPorts.size());
+    }
+
+    private void awaitConnectionReleased() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("weather.upstream.pool.connections").tag("state", "available").gauge().value() < 1
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        String query = exchange.getRequestURI().getQuery();
+        if (query.endsWith("query=slow")) {
+            try {
+                releaseSlowResponse.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] body = query.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(query.endsWith("query=error") ? 500 : 200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+}
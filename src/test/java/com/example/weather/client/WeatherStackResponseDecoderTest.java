@@ -0,0 +1,115 @@
+package com.example.weather.client;
+
+import com.example.weather.TestSupport;
+import com.example.weather.dto.WeatherReading;
+import com.example.weather.exception.Error;
+import com.example.weather.exception.ErrorResponse;
+import com.example.weather.exception.WeatherStackApiException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WeatherStackResponseDecoderTest extends TestSupport {
+
+    private final WeatherStackResponseDecoder decoder = new WeatherStackResponseDecoder(new ObjectMapper());
+
+    @Test
+    void testDecode_whenSuccessPayload_shouldReadLocationAndTemperature() {
+        WeatherReading reading = decode(getAntalyaWeatherJson());
+
+        assertEquals(new WeatherReading("Antalya", "Turkey", 18, "2023-05-19 12:00", 36.9, 30.7), reading);
+    }
+
+    @Test
+    void testDecode_whenErrorPayload_shouldThrowWeatherStackApiException() {
+        // language=json
+        String json = """
+                {
+                    "success": false,
+                    "error": {"code": 615, "type": "request_failed", "info": "Your API request failed.", "extra": {"a": [1, 2]}}
+                }
+                """;
+
+        assertThatThrownBy(() -> decode(json))
+                .isEqualTo(new WeatherStackApiException(new ErrorResponse("false", new Error("615", "request_failed", "Your API request failed."))));
+    }
+
+    @Test
+    void testDecode_whenTemperatureIsNullOrMissing_shouldReturnReadingWithoutTemperature() {
+        // language=json
+        String nullTemperature = """
+                {
+                    "location": {"name": "Antalya", "country": "Turkey", "localtime": "2023-05-20 23:55"},
+                    "current": {"temperature": null, "humidity": 55}
+                }
+                """;
+        // language=json
+        String missingTemperature = """
+                {
+                    "location": {"name": "Antalya", "country": "Turkey", "localtime": "2023-05-20 23:55"},
+                    "current": {"humidity": 55}
+                }
+                """;
+
+        assertNull(decode(nullTemperature).temperature());
+        assertNull(decode(missingTemperature).temperature());
+    }
+
+    @Test
+    void testDecode_whenCoordinatesAreStringsOrInvalid_shouldParseTheValidOnes() {
+        // language=json
+        String json = """
+                {
+                    "location": {"name": "Antalya", "localtime": "2023-05-20 23:55", "lat": "-36.123", "lon": "not a number"},
+                    "current": {"temperature": 18}
+                }
+                """;
+
+        WeatherReading reading = decode(json);
+
+        assertEquals(-36.123, reading.latitude());
+        assertNull(reading.longitude());
+    }
+
+    @Test
+    void testDecode_whenUnknownNestedFields_shouldSkipThem() {
+        // language=json
+        String json = """
+                {
+                    "astro": {"sunrise": "05:40 AM", "moon": {"phase": "Waxing", "illumination": [1, {"x": null}]}},
+                    "location": {"name": "Antalya", "extra": {"name": "Nested"}, "country": "Turkey", "localtime": "2023-05-20 23:55"},
+                    "current": {"air_quality": {"co": "230.3", "temperature": 99}, "weather_descriptions": ["Sunny"], "temperature": 18},
+                    "forecast": [{"temperature": 40}]
+                }
+                """;
+
+        assertEquals(new WeatherReading("Antalya", "Turkey", 18, "2023-05-20 23:55", null, null), decode(json));
+    }
+
+    @Test
+    void testDecode_whenBodyIsTruncated_shouldThrowWithTheParserErrorAsCause() {
+        byte[] json = getAntalyaWeatherJson().getBytes(StandardCharsets.UTF_8);
+        byte[] truncated = Arrays.copyOf(json, json.length / 2);
+
+        assertThatThrownBy(() -> decoder.decode(truncated))
+                .isExactlyInstanceOf(RuntimeException.class)
+                .hasCauseInstanceOf(JsonProcessingException.class);
+    }
+
+    @Test
+    void testDecode_whenLocationIsMissing_shouldThrow() {
+        assertThatThrownBy(() -> decode("{\"current\": {\"temperature\": 18}}"))
+                .hasMessageContaining("no location");
+    }
+
+    private WeatherReading decode(String json) {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
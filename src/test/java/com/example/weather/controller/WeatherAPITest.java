@@ -1,25 +1,37 @@
 package com.example.weather.controller;
 
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.dto.BatchWeatherResult;
 import com.example.weather.dto.WeatherDto;
 import com.example.weather.exception.GeneralExceptionAdvice;
+import com.example.weather.exception.UpstreamQuotaExceededException;
 import com.example.weather.service.WeatherService;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 import static com.example.weather.TestSupport.formatter;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -31,6 +43,9 @@ class WeatherAPITest {
     @MockBean
     private WeatherService weatherService;
 
+    @Autowired
+    private WeatherResponseCache responseCache;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -38,7 +53,7 @@ class WeatherAPITest {
     public void testGetWeather_whenCityParameterValid_shouldReturnWeatherDto() throws Exception {
         LocalDateTime localDateTime = LocalDateTime.parse("2023-05-20 23:55", formatter);
         WeatherDto expected = new WeatherDto("Antalya","Turkey",18,localDateTime);
-        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService))
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService, this.responseCache))
                 .setControllerAdvice(GeneralExceptionAdvice.class)
                 .build();
 
@@ -52,6 +67,112 @@ class WeatherAPITest {
                 .andExpect(jsonPath("$.updatedTime", is("2023-05-20 23:55")));
     }
 
+    @Test
+    public void testGetWeather_whenWeatherIsStale_shouldReturnWeatherDtoWithAgeHeader() throws Exception {
+        LocalDateTime localDateTime = LocalDateTime.parse("2023-05-20 23:55", formatter);
+        WeatherDto expected = new WeatherDto("Antalya","Turkey",18,localDateTime);
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService, this.responseCache))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+
+        when(weatherService.getWeather("Antalya")).thenReturn(expected);
+        when(weatherService.getStaleAge(expected)).thenReturn(Optional.of(Duration.ofMinutes(45)));
+
+        mockMvc.perform(get("/v1/api/weather/Antalya").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.AGE, "2700"))
+                .andExpect(jsonPath("$.cityName", is("Antalya")));
+    }
+
+    @Test
+    public void testGetWeather_whenReportIsFresh_shouldReturnETagAndMaxAgeUntilItGetsOutdated() throws Exception {
+        WeatherDto expected = new WeatherDto("Antalya","Turkey",18,LocalDateTime.now().minusMinutes(10));
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService, this.responseCache))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+
+        when(weatherService.getWeather("Antalya")).thenReturn(expected);
+
+        mockMvc.perform(get("/v1/api/weather/Antalya").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, responseCache.encode(expected).eTag()))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, matchesPattern("max-age=1(19\\d|200)")))
+                .andExpect(jsonPath("$.temperature", is(18)));
+    }
+
+    @Test
+    public void testGetWeather_whenIfNoneMatchIsCurrentETag_shouldReturnHTTP304WithoutBody() throws Exception {
+        LocalDateTime localDateTime = LocalDateTime.parse("2023-05-20 23:55", formatter);
+        WeatherDto expected = new WeatherDto("Antalya","Turkey",18,localDateTime);
+        String eTag = responseCache.encode(expected).eTag();
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService, this.responseCache))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+
+        when(weatherService.getWeather("Antalya")).thenReturn(expected);
+
+        mockMvc.perform(get("/v1/api/weather/Antalya").header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().bytes(new byte[0]));
+
+        mockMvc.perform(get("/v1/api/weather/Antalya").header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cityName", is("Antalya")));
+    }
+
+    @Test
+    public void testGetWeather_whenQuotaIsUsedUp_shouldReturnHTTP429WithRetryAfter() throws Exception {
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService, this.responseCache))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+
+        when(weatherService.getWeather("Antalya")).thenThrow(new UpstreamQuotaExceededException("Antalya", Duration.ofMillis(1500)));
+
+        mockMvc.perform(get("/v1/api/weather/Antalya").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+    }
+
+    @Test
+    public void testGetWeather_whenCircuitIsOpenAndCityHasNoReport_shouldReturnHTTP503() throws Exception {
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService, this.responseCache))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("weatherstack");
+        circuitBreaker.transitionToOpenState();
+        when(weatherService.getWeather("Antalya")).thenThrow(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+
+        mockMvc.perform(get("/v1/api/weather/Antalya").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void testGetWeathers_whenCitiesParameterValid_shouldReturnResultPerCity() throws Exception {
+        LocalDateTime localDateTime = LocalDateTime.parse("2023-05-20 23:55", formatter);
+        WeatherDto antalya = new WeatherDto("Antalya","Turkey",18,localDateTime);
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherAPI(this.weatherService, this.responseCache))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+
+        when(weatherService.getWeathers(List.of("Antalya", "Atlantis"))).thenReturn(List.of(
+                BatchWeatherResult.of("Antalya", BatchWeatherResult.Status.CACHE, antalya),
+                BatchWeatherResult.error("Atlantis", "Your API request failed. Please try again or contact support.")));
+
+        mockMvc.perform(get("/v1/api/weather").param("cities", "Antalya", "Atlantis").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status", is("CACHE")))
+                .andExpect(jsonPath("$.results[0].weather.temperature", is(18)))
+                .andExpect(jsonPath("$.results[1].status", is("ERROR")));
+    }
+
+    @Test
+    public void testGetWeathers_whenOneCityIsNotValid_shouldReturnHTTP400BadRequest() throws Exception {
+        mockMvc.perform(get("/v1/api/weather").param("cities", "Antalya", "123").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testGetWeather_whenCityParameterIsNotValid_shouldReturnHTTP400BadRequest() throws Exception {
         mockMvc.perform(get("/v1/api/weather/123").contentType(MediaType.APPLICATION_JSON))
@@ -0,0 +1,64 @@
+package com.example.weather.controller;
+
+import com.example.weather.dto.WeatherHistoryBucket;
+import com.example.weather.dto.WeatherHistoryResponse;
+import com.example.weather.exception.GeneralExceptionAdvice;
+import com.example.weather.exception.InvalidHistoryQueryException;
+import com.example.weather.service.WeatherHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WeatherHistoryAPITest {
+
+    private WeatherHistoryService weatherHistoryService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        weatherHistoryService = mock(WeatherHistoryService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherHistoryAPI(weatherHistoryService))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+    }
+
+    @Test
+    void testGetWeatherHistory_whenRangeIsValid_shouldReturnBuckets() throws Exception {
+        LocalDateTime from = LocalDateTime.parse("2023-05-20T00:00");
+        LocalDateTime to = LocalDateTime.parse("2023-05-21T00:00");
+        WeatherHistoryResponse history = new WeatherHistoryResponse("antalya", "Antalya", "Turkey", from, to, 60, 10, 14, 12.0, 2,
+                List.of(new WeatherHistoryBucket(from.plusHours(3), 10, 14, 12.0, 2)));
+        when(weatherHistoryService.getHistory("Antalya", from, to, 60)).thenReturn(history);
+
+        mockMvc.perform(get("/v1/api/weather/Antalya/history")
+                        .param("from", "2023-05-20T00:00:00")
+                        .param("to", "2023-05-21T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cityName", is("Antalya")))
+                .andExpect(jsonPath("$.samples", is(2)))
+                .andExpect(jsonPath("$.buckets[0].start", is("2023-05-20 03:00")))
+                .andExpect(jsonPath("$.buckets[0].averageTemperature", is(12.0)));
+    }
+
+    @Test
+    void testGetWeatherHistory_whenRangeIsNotValid_shouldReturnBadRequest() throws Exception {
+        when(weatherHistoryService.getHistory(eq("Antalya"), any(), any(), eq(1L)))
+                .thenThrow(new InvalidHistoryQueryException("The range has 1440 buckets of 1 minutes, at most 1000 are allowed"));
+
+        mockMvc.perform(get("/v1/api/weather/Antalya/history").param("bucketMinutes", "1"))
+                .andExpect(status().isBadRequest());
+    }
+}
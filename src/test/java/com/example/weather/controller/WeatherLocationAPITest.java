@@ -0,0 +1,73 @@
+package com.example.weather.controller;
+
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.exception.GeneralExceptionAdvice;
+import com.example.weather.service.WeatherLocationService;
+import com.example.weather.service.WeatherService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.beanvalidation.MethodValidationPostProcessor;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+
+import static com.example.weather.TestSupport.formatter;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WeatherLocationAPITest {
+
+    private WeatherLocationService weatherLocationService;
+    private WeatherResponseCache responseCache;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        weatherLocationService = mock(WeatherLocationService.class);
+        WeatherService weatherService = mock(WeatherService.class);
+        responseCache = new WeatherResponseCache(new ObjectMapper().registerModule(new JavaTimeModule()),
+                Clock.systemDefaultZone(), new SimpleMeterRegistry(), 30, 100);
+
+        MethodValidationPostProcessor validation = new MethodValidationPostProcessor();
+        validation.afterPropertiesSet();
+        WeatherLocationAPI controller = (WeatherLocationAPI) validation.postProcessAfterInitialization(
+                new WeatherLocationAPI(weatherLocationService, weatherService, responseCache), "weatherLocationAPI");
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+    }
+
+    @Test
+    void testGetWeatherByCoordinates_whenCoordinatesValid_shouldReturnWeatherOfNearestCity() throws Exception {
+        WeatherDto antalya = new WeatherDto("Antalya", "Turkey", 18, LocalDateTime.parse("2023-05-20 23:55", formatter));
+        when(weatherLocationService.getWeather(36.865, 30.63)).thenReturn(antalya);
+
+        mockMvc.perform(get("/v1/api/weather/coordinates").param("lat", "36.865").param("lon", "30.63"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, responseCache.encode(antalya).eTag()))
+                .andExpect(jsonPath("$.cityName", is("Antalya")))
+                .andExpect(jsonPath("$.temperature", is(18)));
+        verify(weatherLocationService).getWeather(36.865, 30.63);
+    }
+
+    @Test
+    void testGetWeatherByCoordinates_whenLatitudeOutOfRange_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/v1/api/weather/coordinates").param("lat", "91").param("lon", "30.63"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(weatherLocationService);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.weather.controller;
+
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.exception.GeneralExceptionAdvice;
+import com.example.weather.exception.UpstreamQuotaExceededException;
+import com.example.weather.service.WeatherService;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+import static com.example.weather.TestSupport.formatter;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "server.port=0")
+@DirtiesContext
+class WeatherV2APITest {
+
+    @MockBean
+    private WeatherService weatherService;
+
+    @Autowired
+    private WeatherResponseCache responseCache;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new WeatherV2API(this.weatherService, this.responseCache))
+                .setControllerAdvice(GeneralExceptionAdvice.class)
+                .build();
+    }
+
+    @Test
+    public void testGetWeather_whenWeatherStackAnswersLater_shouldReturnWeatherDtoOnceFutureCompletes() throws Exception {
+        WeatherDto expected = new WeatherDto("Antalya", "Turkey", 18, LocalDateTime.parse("2023-05-20 23:55", formatter));
+        CompletableFuture<WeatherDto> pending = new CompletableFuture<>();
+        when(weatherService.getWeatherAsync("Antalya")).thenReturn(pending);
+
+        MvcResult result = mockMvc.perform(get("/v2/api/weather/Antalya").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pending.complete(expected);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, responseCache.encode(expected).eTag()))
+                .andExpect(jsonPath("$.cityName", is("Antalya")))
+                .andExpect(jsonPath("$.temperature", is(18)))
+                .andExpect(jsonPath("$.updatedTime", is("2023-05-20 23:55")));
+    }
+
+    @Test
+    public void testGetWeather_whenIfNoneMatchIsCurrentETag_shouldReturnHTTP304() throws Exception {
+        WeatherDto expected = new WeatherDto("Antalya", "Turkey", 18, LocalDateTime.parse("2023-05-20 23:55", formatter));
+        when(weatherService.getWeatherAsync("Antalya")).thenReturn(CompletableFuture.completedFuture(expected));
+
+        MvcResult result = mockMvc.perform(get("/v2/api/weather/Antalya")
+                        .header(HttpHeaders.IF_NONE_MATCH, responseCache.encode(expected).eTag()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void testGetWeather_whenQuotaIsUsedUp_shouldReturnHTTP429WithRetryAfter() throws Exception {
+        when(weatherService.getWeatherAsync("Antalya"))
+                .thenReturn(CompletableFuture.failedFuture(new UpstreamQuotaExceededException("Antalya", Duration.ofMillis(1500))));
+
+        MvcResult result = mockMvc.perform(get("/v2/api/weather/Antalya").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+    }
+
+    @Test
+    public void testGetWeather_whenCircuitIsOpenAndCityHasNoReport_shouldReturnHTTP503() throws Exception {
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("weatherstack");
+        circuitBreaker.transitionToOpenState();
+        when(weatherService.getWeatherAsync("Antalya"))
+                .thenReturn(CompletableFuture.failedFuture(CallNotPermittedException.createCallNotPermittedException(circuitBreaker)));
+
+        MvcResult result = mockMvc.perform(get("/v2/api/weather/Antalya").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
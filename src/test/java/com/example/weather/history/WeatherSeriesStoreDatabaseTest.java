@@ -0,0 +1,85 @@
+package com.example.weather.history;
+
+import com.example.weather.TestSupport;
+import com.example.weather.dto.WeatherHistoryResponse;
+import com.example.weather.dto.WeatherSeriesPoint;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.model.WeatherHourlyRollupEntity;
+import com.example.weather.repositroy.WeatherHourlyRollupRepository;
+import com.example.weather.repositroy.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+class WeatherSeriesStoreDatabaseTest extends TestSupport {
+
+    @Autowired
+    private WeatherRepository weatherRepository;
+    @Autowired
+    private WeatherHourlyRollupRepository rollupRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testRun_whenStoredReportsOrRollupsHaveNoTemperature_shouldLoadTheOthers() {
+        LocalDateTime hour = getCurrentLocalDateTime().withMinute(0).minusHours(3);
+        weatherRepository.saveAll(List.of(
+                new WeatherEntity(requestedCity, "Antalya", "Turkey", 16, hour.plusMinutes(10), hour.plusMinutes(10)),
+                new WeatherEntity(requestedCity, "Antalya", "Turkey", null, hour.plusMinutes(20), hour.plusMinutes(20))));
+        WeatherHourlyRollupEntity rollup = new WeatherHourlyRollupEntity(requestedCity, "Antalya", "Turkey", hour.minusDays(2));
+        rollup.merge(8, 12, 30, 3);
+        rollupRepository.saveAll(List.of(rollup, new WeatherHourlyRollupEntity(requestedCity, "Antalya", "Turkey", hour.minusDays(3))));
+        Clock clock = Clock.fixed(getCurrentInstant(), Clock.systemDefaultZone().getZone());
+        WeatherSeriesStore seriesStore = new WeatherSeriesStore(weatherRepository, rollupRepository, new TransactionTemplate(transactionManager),
+                clock, new SimpleMeterRegistry(), Duration.ofDays(30).toMillis(), Duration.ofDays(1).toMillis());
+
+        seriesStore.run(null);
+
+        WeatherHistoryResponse history = seriesStore.query(requestedCity, hour.minusDays(5), hour.plusHours(1), Duration.ofDays(1));
+        assertEquals(4, history.samples());
+        assertEquals(8, history.minTemperature());
+        assertEquals(16, history.maxTemperature());
+    }
+
+    @Test
+    void testStreamSeriesPointsSince_shouldReturnPointsOrderedByCityAndTime() {
+        LocalDateTime hour = getCurrentLocalDateTime().withMinute(0).minusHours(3);
+        weatherRepository.saveAll(List.of(
+                new WeatherEntity("izmir", "Izmir", "Turkey", 20, hour.plusMinutes(20), hour.plusMinutes(20)),
+                new WeatherEntity(requestedCity, "Antalya", "Turkey", 18, hour.plusMinutes(20), hour.plusMinutes(20)),
+                new WeatherEntity("izmir", "Izmir", "Turkey", 19, hour.plusMinutes(10), hour.plusMinutes(10)),
+                new WeatherEntity(requestedCity, "Antalya", "Turkey", 16, hour.plusMinutes(10), hour.plusMinutes(10))));
+        rollupRepository.saveAll(List.of(rollup("izmir", hour.minusDays(2)), rollup(requestedCity, hour.minusDays(2)),
+                rollup("izmir", hour.minusDays(3)), rollup(requestedCity, hour.minusDays(3))));
+
+        try (Stream<WeatherSeriesPoint> reports = weatherRepository.streamSeriesPointsSince(hour.minusDays(5));
+             Stream<WeatherSeriesPoint> rollups = rollupRepository.streamSeriesPointsSince(hour.minusDays(5))) {
+            assertEquals(List.of(requestedCity + "@" + hour.plusMinutes(10), requestedCity + "@" + hour.plusMinutes(20),
+                    "izmir@" + hour.plusMinutes(10), "izmir@" + hour.plusMinutes(20)), reports.map(this::cityAndTime).toList());
+            assertEquals(List.of(requestedCity + "@" + hour.minusDays(3), requestedCity + "@" + hour.minusDays(2),
+                    "izmir@" + hour.minusDays(3), "izmir@" + hour.minusDays(2)), rollups.map(this::cityAndTime).toList());
+        }
+    }
+
+    private static WeatherHourlyRollupEntity rollup(String city, LocalDateTime hourStart) {
+        WeatherHourlyRollupEntity rollup = new WeatherHourlyRollupEntity(city, city, "Turkey", hourStart);
+        rollup.merge(8, 12, 30, 3);
+        return rollup;
+    }
+
+    private String cityAndTime(WeatherSeriesPoint point) {
+        return point.requestedCityName() + "@" + point.time();
+    }
+}
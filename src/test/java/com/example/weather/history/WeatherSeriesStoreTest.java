@@ -0,0 +1,185 @@
+package com.example.weather.history;
+
+import com.example.weather.TestSupport;
+import com.example.weather.dto.WeatherHistoryBucket;
+import com.example.weather.dto.WeatherHistoryResponse;
+import com.example.weather.dto.WeatherSeriesPoint;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherHourlyRollupRepository;
+import com.example.weather.repositroy.WeatherRepository;
+import com.example.weather.service.WeatherStoredEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WeatherSeriesStoreTest extends TestSupport {
+
+    private WeatherRepository weatherRepository;
+    private WeatherHourlyRollupRepository rollupRepository;
+    private WeatherSeriesStore seriesStore;
+    private SimpleMeterRegistry meterRegistry;
+    private LocalDateTime hour;
+
+    @BeforeEach
+    void setUp() {
+        weatherRepository = mock(WeatherRepository.class);
+        rollupRepository = mock(WeatherHourlyRollupRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        meterRegistry = new SimpleMeterRegistry();
+        Clock clock = Clock.fixed(getCurrentInstant(), Clock.systemDefaultZone().getZone());
+        // 30 days of history, reports kept for a day
+        seriesStore = new WeatherSeriesStore(weatherRepository, rollupRepository, transactionTemplate, clock,
+                meterRegistry, Duration.ofDays(30).toMillis(), Duration.ofDays(1).toMillis());
+        hour = getCurrentLocalDateTime().withMinute(0).withSecond(0).withNano(0).minusHours(3);
+    }
+
+    @Test
+    void testQuery_shouldAggregateReportsIntoBucketsAndLeaveOutEmptyBuckets() {
+        store(10, hour.plusMinutes(5));
+        store(14, hour.plusMinutes(35));
+        store(20, hour.plusHours(2).plusMinutes(10));
+
+        WeatherHistoryResponse history = seriesStore.query(requestedCity, hour, hour.plusHours(3), Duration.ofHours(1));
+
+        assertEquals("Antalya", history.cityName());
+        assertEquals(10, history.minTemperature());
+        assertEquals(20, history.maxTemperature());
+        assertEquals(44 / 3.0, history.averageTemperature(), 0.001);
+        assertEquals(3, history.samples());
+        assertEquals(List.of(
+                new WeatherHistoryBucket(hour, 10, 14, 12.0, 2),
+                new WeatherHistoryBucket(hour.plusHours(2), 20, 20, 20.0, 1)), history.buckets());
+    }
+
+    @Test
+    void testQuery_shouldIncludeFromAndExcludeTo() {
+        store(10, hour);
+        store(14, hour.plusHours(1));
+
+        WeatherHistoryResponse history = seriesStore.query(requestedCity, hour, hour.plusHours(1), Duration.ofMinutes(15));
+
+        assertEquals(List.of(new WeatherHistoryBucket(hour, 10, 10, 10.0, 1)), history.buckets());
+    }
+
+    @Test
+    void testQuery_whenCityHasNoHistory_shouldReturnNoBuckets() {
+        WeatherHistoryResponse history = seriesStore.query("unknown", hour, hour.plusHours(1), Duration.ofHours(1));
+
+        assertEquals(0, history.samples());
+        assertNull(history.averageTemperature());
+        assertTrue(history.buckets().isEmpty());
+    }
+
+    @Test
+    void testRun_shouldLoadRollupsAndReportsAndMergeThemWithLiveReports() {
+        LocalDateTime twoDaysAgo = hour.minusDays(2);
+        when(rollupRepository.streamSeriesPointsSince(any())).thenReturn(Stream.of(
+                new WeatherSeriesPoint(requestedCity, "Antalya", "Turkey", twoDaysAgo, 8, 12, 30.0, 3)));
+        when(weatherRepository.streamSeriesPointsSince(any())).thenReturn(Stream.of(
+                new WeatherSeriesPoint(requestedCity, "Antalya", "Turkey", hour.plusMinutes(10), 16, 16, 16.0, 1)));
+        // a report fetched while the history is loaded is already there when the database returns it
+        store(16, hour.plusMinutes(10));
+        store(18, hour.minusMinutes(10));
+
+        seriesStore.run(null);
+        WeatherHistoryResponse history = seriesStore.query(requestedCity, twoDaysAgo, hour.plusHours(1), Duration.ofDays(1));
+
+        assertEquals(5, history.samples());
+        assertEquals(8, history.minTemperature());
+        assertEquals(18, history.maxTemperature());
+        assertEquals(64 / 5.0, history.averageTemperature(), 0.001);
+    }
+
+    @Test
+    void testStore_whenSeriesIsFull_shouldDropPointsOlderThanWindow() {
+        LocalDateTime start = getCurrentLocalDateTime().minusDays(40);
+        for (int i = 0; i < 40; i++) {
+            store(i, start.plusDays(i));
+        }
+
+        WeatherHistoryResponse history = seriesStore.query(requestedCity, start, getCurrentLocalDateTime(), Duration.ofDays(1));
+
+        assertTrue(history.samples() < 40);
+        assertTrue(history.buckets().get(0).start().isAfter(start.plusDays(5)));
+        assertEquals(39, history.maxTemperature());
+    }
+
+    @Test
+    void testStore_whenReportHasNoTemperature_shouldLeaveItOutOfTheHistory() {
+        store(10, hour);
+        seriesStore.onWeatherStored(new WeatherStoredEvent(
+                new WeatherEntity(requestedCity, "Antalya", "Turkey", null, hour.plusMinutes(30), hour.plusMinutes(30))));
+
+        WeatherHistoryResponse history = seriesStore.query(requestedCity, hour, hour.plusHours(1), Duration.ofHours(1));
+
+        assertEquals(List.of(new WeatherHistoryBucket(hour, 10, 10, 10.0, 1)), history.buckets());
+    }
+
+    @Test
+    void testCompact_shouldFoldReportsOlderThanRetentionWindowIntoHoursAndDropExpiredPoints() {
+        LocalDateTime twoDaysAgo = hour.minusDays(2);
+        store(5, hour.minusDays(31));
+        store(10, twoDaysAgo.plusMinutes(5));
+        store(14, twoDaysAgo.plusMinutes(35));
+        store(20, twoDaysAgo.plusHours(1).plusMinutes(10));
+        store(16, hour.plusMinutes(10));
+        store(18, hour.plusMinutes(20));
+
+        seriesStore.compact();
+
+        // the expired point is gone, the reports of two days ago are one point per hour, today's reports are kept
+        assertEquals(4.0, meterRegistry.get("weather.history.points").gauge().value());
+        WeatherHistoryResponse history = seriesStore.query(requestedCity, twoDaysAgo.minusDays(30), hour.plusHours(1), Duration.ofMinutes(15));
+        assertEquals(List.of(
+                new WeatherHistoryBucket(twoDaysAgo, 10, 14, 12.0, 2),
+                new WeatherHistoryBucket(twoDaysAgo.plusHours(1), 20, 20, 20.0, 1),
+                new WeatherHistoryBucket(hour, 16, 16, 16.0, 1),
+                new WeatherHistoryBucket(hour.plusMinutes(15), 18, 18, 18.0, 1)), history.buckets());
+
+        // folding again changes nothing
+        seriesStore.compact();
+        assertEquals(history, seriesStore.query(requestedCity, twoDaysAgo.minusDays(30), hour.plusHours(1), Duration.ofMinutes(15)));
+    }
+
+    @Test
+    void testCompact_whenCityHasOnlyExpiredPoints_shouldRemoveIt() {
+        for (int i = 0; i < 100; i++) {
+            seriesStore.onWeatherStored(new WeatherStoredEvent(
+                    new WeatherEntity("city " + i, "City", "Turkey", i, hour.minusDays(31), hour.minusDays(31))));
+        }
+        store(16, hour);
+
+        seriesStore.compact();
+
+        assertEquals(1.0, meterRegistry.get("weather.history.points").gauge().value());
+        assertEquals(0, seriesStore.query("city 1", hour.minusDays(40), hour, Duration.ofDays(1)).samples());
+        assertEquals(1, seriesStore.query(requestedCity, hour, hour.plusHours(1), Duration.ofHours(1)).samples());
+    }
+
+    private void store(int temperature, LocalDateTime updatedTime) {
+        seriesStore.onWeatherStored(new WeatherStoredEvent(
+                new WeatherEntity(requestedCity, "Antalya", "Turkey", temperature, updatedTime, updatedTime)));
+    }
+}
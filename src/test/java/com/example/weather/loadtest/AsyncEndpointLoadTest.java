@@ -0,0 +1,139 @@
+package com.example.weather.loadtest;
+
+import com.example.weather.WeatherApplication;
+import com.example.weather.loadtest.WeatherStackStubServer.LatencyDistribution;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the blocking v1 lookup with the async v2 lookup on platform request threads under a slow weatherstack.
+ * Every request asks for a different city, so v1 holds a request thread for the whole upstream round trip while
+ * v2 only holds a pending future. Heap per in-flight request is the live heap while the requests wait on weatherstack,
+ * over the live heap before the load, divided by the weatherstack calls in flight, one per request the app is serving.
+ * Client and stub run in the same JVM, so their share is included, requests still queued for a v1 thread too.
+ * Run with: mvn test -Dgroups=load -Dsurefire.excludedGroups= -Dtest=AsyncEndpointLoadTest
+ */
+@Tag("load")
+class AsyncEndpointLoadTest {
+
+    private static final int CONCURRENT_REQUESTS = 1000;
+    private static final Duration UPSTREAM_LATENCY = Duration.ofSeconds(2);
+
+    @Test
+    void compareBlockingAndAsyncEndpointsUnderSlowUpstream() throws Exception {
+        LoadResult blocking = runLoad("v1");
+        LoadResult async = runLoad("v2");
+
+        System.out.printf("%-8s %14s %14s %12s %12s %16s %12s%n", "api", "peak upstream", "succeeded", "peak threads", "heap MB", "heap/request KB", "elapsed ms");
+        System.out.println(blocking);
+        System.out.println(async);
+
+        assertEquals(CONCURRENT_REQUESTS, async.succeeded());
+        assertTrue(async.peakUpstreamCalls() > blocking.peakUpstreamCalls());
+    }
+
+    private LoadResult runLoad(String api) throws Exception {
+        // the stub sleeps on virtual threads, so its threads are not counted against the app
+        WeatherStackStubServer stubServer = WeatherStackStubServer.builder()
+                .virtualThreads()
+                .backlog(CONCURRENT_REQUESTS)
+                .latency(LatencyDistribution.fixed(UPSTREAM_LATENCY))
+                .start();
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WeatherApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=false",
+                        "--weather-stack.api-url=" + stubServer.url(),
+                        "--weather-stack.client.max-in-flight=" + CONCURRENT_REQUESTS,
+                        "--weather-stack.client.response-timeout=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis(),
+                        // accepting a thousand connections at once on one CPU takes longer than the connect timeout, which is not what is measured here
+                        "--weather-stack.client.connect-timeout=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis(),
+                        "--resilience4j.timelimiter.instances.weatherstack.timeout-duration=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis() + "ms",
+                        "--resilience4j.circuitbreaker.instances.weatherstack.slow-call-duration-threshold=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis() + "ms",
+                        "--weather-stack.refresh.hot.enabled=false",
+                        "--weather-stack.quota.capacity=" + CONCURRENT_REQUESTS,
+                        "--spring.datasource.url=jdbc:h2:mem:async-load-" + api);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient httpClient = HttpClient.newBuilder().executor(clients).build();
+            threads.resetPeakThreadCount();
+            long baselineHeap = liveHeap(memory);
+
+            long start = System.nanoTime();
+            List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/" + api + "/api/weather/City" + i))
+                        .timeout(Duration.ofSeconds(60))
+                        .build();
+                responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+            }
+            awaitFirstUpstreamCalls(stubServer);
+            int inFlightRequests = stubServer.inFlight();
+            long heapUnderLoad = liveHeap(memory) - baselineHeap;
+
+            int succeeded = 0;
+            for (CompletableFuture<HttpResponse<Void>> response : responses) {
+                if (response.handle((result, error) -> error == null && result.statusCode() == 200).join()) {
+                    succeeded++;
+                }
+            }
+            long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            return new LoadResult(api, stubServer.peakInFlight(), succeeded, threads.getPeakThreadCount(), heapUnderLoad,
+                    inFlightRequests, elapsedMillis);
+        } finally {
+            context.close();
+            stubServer.close();
+        }
+    }
+
+    /**
+     * Waits until the first weatherstack calls complete, when the calls in flight are at their peak: the Tomcat thread
+     * limit for v1, every request that reached the app for v2. The heap is then measured while they wait on weatherstack.
+     */
+    private static void awaitFirstUpstreamCalls(WeatherStackStubServer stubServer) throws InterruptedException {
+        long deadline = System.nanoTime() + UPSTREAM_LATENCY.multipliedBy(10).toNanos();
+        while (System.nanoTime() < deadline && stubServer.calls() == stubServer.inFlight()) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static long liveHeap(MemoryMXBean memory) {
+        // twice, so objects freed by finalization and reference processing of the first collection are gone too
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private record LoadResult(String api, int peakUpstreamCalls, int succeeded, int peakThreads, long heapUnderLoadBytes,
+                              int inFlightRequests, long elapsedMillis) {
+        @Override
+        public String toString() {
+            long heapPerRequest = inFlightRequests == 0 ? 0 : heapUnderLoadBytes / inFlightRequests;
+            return String.format("%-8s %14d %14d %12d %12d %16d %12d", api, peakUpstreamCalls, succeeded, peakThreads,
+                    heapUnderLoadBytes / (1024 * 1024), heapPerRequest / 1024, elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.weather.loadtest;
+
+import com.example.weather.WeatherApplication;
+import com.example.weather.repositroy.WeatherRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the latest weather lookup while the history table grows, with and without the
+ * (requestedCityName, updatedTime desc) index. Every refresh keeps a row, so the table only grows.
+ * Run with: mvn test -Dgroups=load -Dsurefire.excludedGroups= -Dtest=LatestWeatherLookupLoadTest
+ * Table sizes can be set with -Dlookup.rows=10000,100000,1000000
+ */
+@Tag("load")
+class LatestWeatherLookupLoadTest {
+
+    private static final int CITIES = 1000;
+    private static final int INDEXED_LOOKUPS = 2000;
+    private static final int SCAN_LOOKUPS = 20;
+    private static final String INDEX_NAME = "IDX_WEATHER_CITY_UPDATED_TIME";
+
+    @Test
+    void compareLookupLatencyAsHistoryGrows() {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WeatherApplication.class)
+                .run("--server.port=0",
+                        "--weather-stack.refresh.hot.enabled=false",
+                        "--spring.datasource.url=jdbc:h2:mem:lookup");
+
+        try {
+            WeatherRepository weatherRepository = context.getBean(WeatherRepository.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "select count(*) from information_schema.indexes where index_name = ?", Integer.class, INDEX_NAME));
+
+            List<LookupResult> results = new ArrayList<>();
+            long rows = 0;
+            for (long targetRows : tableSizes()) {
+                insertHistory(jdbcTemplate, rows, targetRows);
+                rows = targetRows;
+
+                Duration indexed = averageLookup(weatherRepository, INDEXED_LOOKUPS);
+                jdbcTemplate.execute("drop index " + INDEX_NAME);
+                Duration scan = averageLookup(weatherRepository, SCAN_LOOKUPS);
+                jdbcTemplate.execute("create index " + INDEX_NAME + " on weather_entity (requested_city_name, updated_time desc)");
+                results.add(new LookupResult(rows, indexed, scan));
+            }
+
+            System.out.printf("%12s %16s %16s%n", "rows", "indexed us", "no index us");
+            results.forEach(System.out::println);
+
+            LookupResult largest = results.get(results.size() - 1);
+            assertTrue(largest.indexed().compareTo(largest.scan()) < 0);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static long[] tableSizes() {
+        return Arrays.stream(System.getProperty("lookup.rows", "10000,100000,1000000,2000000").split(","))
+                .mapToLong(Long::parseLong)
+                .toArray();
+    }
+
+    private static void insertHistory(JdbcTemplate jdbcTemplate, long fromRow, long toRow) {
+        // one row per city and minute, going back in time, as periodic refreshes would leave behind
+        jdbcTemplate.update("insert into weather_entity (id, requested_city_name, city_name, country, temperature, updated_time, response_local_time) " +
+                "select cast(random_uuid() as varchar), 'City' || mod(x, ?), 'City' || mod(x, ?), 'Country', mod(x, 40), " +
+                "dateadd('MINUTE', -x / ?, timestamp '2024-01-01 00:00:00'), dateadd('MINUTE', -x / ?, timestamp '2024-01-01 00:00:00') " +
+                "from system_range(?, ?)", CITIES, CITIES, CITIES, CITIES, fromRow + 1, toRow);
+    }
+
+    private static Duration averageLookup(WeatherRepository weatherRepository, int lookups) {
+        for (int i = 0; i < Math.min(lookups, 100); i++) {
+            weatherRepository.findLatestByRequestedCityName(randomCity());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            assertTrue(weatherRepository.findLatestByRequestedCityName(randomCity()).isPresent());
+        }
+        return Duration.ofNanos((System.nanoTime() - start) / lookups);
+    }
+
+    private static String randomCity() {
+        return "City" + ThreadLocalRandom.current().nextInt(CITIES);
+    }
+
+    private record LookupResult(long rows, Duration indexed, Duration scan) {
+        @Override
+        public String toString() {
+            return String.format("%12d %16d %16d", rows, indexed.toNanos() / 1000, scan.toNanos() / 1000);
+        }
+    }
+}
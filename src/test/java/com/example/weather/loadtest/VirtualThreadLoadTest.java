@@ -0,0 +1,100 @@
+package com.example.weather.loadtest;
+
+import com.example.weather.WeatherApplication;
+import com.example.weather.loadtest.WeatherStackStubServer.LatencyDistribution;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares how many slow weatherstack calls the platform thread and the virtual thread modes keep in flight at once.
+ * Every request asks for a different city, so each one holds a request thread for the whole upstream round trip.
+ * Run with: mvn test -Dgroups=load -Dsurefire.excludedGroups= -Dtest=VirtualThreadLoadTest
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+
+    private static final int CONCURRENT_REQUESTS = 600;
+    private static final Duration UPSTREAM_LATENCY = Duration.ofSeconds(2);
+
+    @Test
+    void compareThreadModesUnderSlowUpstream() throws Exception {
+        LoadResult platformThreads = runLoad(false);
+        LoadResult virtualThreads = runLoad(true);
+
+        System.out.printf("%-16s %14s %14s %12s%n", "mode", "peak upstream", "succeeded", "elapsed ms");
+        System.out.println(platformThreads);
+        System.out.println(virtualThreads);
+
+        assertTrue(virtualThreads.peakUpstreamCalls() > platformThreads.peakUpstreamCalls());
+    }
+
+    private LoadResult runLoad(boolean virtual) throws Exception {
+        WeatherStackStubServer stubServer = WeatherStackStubServer.builder()
+                .backlog(CONCURRENT_REQUESTS)
+                .latency(LatencyDistribution.fixed(UPSTREAM_LATENCY))
+                .start();
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WeatherApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--weather-stack.api-url=" + stubServer.url(),
+                        "--weather-stack.client.max-in-flight=" + CONCURRENT_REQUESTS,
+                        "--weather-stack.client.response-timeout=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis(),
+                        // accepting hundreds of connections at once on one CPU takes longer than the connect timeout, which is not what is measured here
+                        "--weather-stack.client.connect-timeout=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis(),
+                        "--resilience4j.timelimiter.instances.weatherstack.timeout-duration=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis() + "ms",
+                        "--resilience4j.circuitbreaker.instances.weatherstack.slow-call-duration-threshold=" + UPSTREAM_LATENCY.multipliedBy(10).toMillis() + "ms",
+                        "--weather-stack.refresh.hot.enabled=false",
+                        "--weather-stack.quota.capacity=" + CONCURRENT_REQUESTS,
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + virtual);
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient httpClient = HttpClient.newBuilder().executor(clients).build();
+
+            long start = System.nanoTime();
+            List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v1/api/weather/City" + i))
+                        .timeout(Duration.ofSeconds(60))
+                        .build();
+                responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+            }
+
+            int succeeded = 0;
+            for (CompletableFuture<HttpResponse<Void>> response : responses) {
+                if (response.handle((result, error) -> error == null && result.statusCode() == 200).join()) {
+                    succeeded++;
+                }
+            }
+            long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            return new LoadResult(virtual ? "virtual" : "platform", stubServer.peakInFlight(), succeeded, elapsedMillis);
+        } finally {
+            context.close();
+            stubServer.close();
+        }
+    }
+
+    private record LoadResult(String mode, int peakUpstreamCalls, int succeeded, long elapsedMillis) {
+        @Override
+        public String toString() {
+            return String.format("%-16s %14d %14d %12d", mode, peakUpstreamCalls, succeeded, elapsedMillis);
+        }
+    }
+}
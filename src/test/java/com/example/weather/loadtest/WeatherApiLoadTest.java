@@ -0,0 +1,74 @@
+package com.example.weather.loadtest;
+
+import com.example.weather.WeatherApplication;
+import com.example.weather.loadtest.WeatherLoadGenerator.LoadReport;
+import com.example.weather.loadtest.WeatherStackStubServer.LatencyDistribution;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives /v1/api/weather/{city} with a Zipf mix of cities against the local weatherstack stub and reports
+ * throughput and latency percentiles. The stub answers with a long tailed latency, a share of error payloads,
+ * 503s and stalled bodies, so the cache, coalescing, negative cache and resilience paths all see traffic.
+ * Run with: mvn test -Dgroups=load -Dsurefire.excludedGroups= -Dtest=WeatherApiLoadTest
+ * The run can be tuned with -Dload.clients=64 -Dload.cities=1000 -Dload.zipf=1.1 -Dload.seconds=30
+ * -Dload.upstream.median-ms=150 -Dload.upstream.p99-ms=1200 -Dload.upstream.error-rate=0.01
+ */
+@Tag("load")
+class WeatherApiLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 64);
+    private static final int CITIES = Integer.getInteger("load.cities", 1000);
+    private static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("load.zipf", "1.1"));
+    private static final Duration MEASURED = Duration.ofSeconds(Integer.getInteger("load.seconds", 30));
+    private static final Duration WARM_UP = MEASURED.dividedBy(3);
+    private static final Duration UPSTREAM_MEDIAN = Duration.ofMillis(Integer.getInteger("load.upstream.median-ms", 150));
+    private static final Duration UPSTREAM_P99 = Duration.ofMillis(Integer.getInteger("load.upstream.p99-ms", 1200));
+    private static final double UPSTREAM_ERROR_RATE = Double.parseDouble(System.getProperty("load.upstream.error-rate", "0.01"));
+
+    @Test
+    void driveWeatherApiWithZipfCityMix() throws Exception {
+        ZipfCityMix cityMix = ZipfCityMix.of(CITIES, ZIPF_EXPONENT);
+        try (WeatherStackStubServer stub = WeatherStackStubServer.builder()
+                .latency(LatencyDistribution.logNormal(UPSTREAM_MEDIAN, UPSTREAM_P99))
+                .errorRate(UPSTREAM_ERROR_RATE)
+                .serverErrorRate(UPSTREAM_ERROR_RATE)
+                .slowBody(UPSTREAM_ERROR_RATE, Duration.ofSeconds(1))
+                .unknownCities("City" + CITIES)
+                .start()) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(WeatherApplication.class)
+                    .run("--server.port=0",
+                            "--weather-stack.api-url=" + stub.url(),
+                            "--weather-stack.quota.capacity=100000",
+                            "--weather-stack.quota.refill-amount=100000",
+                            "--weather-stack.client.max-in-flight=" + CLIENTS,
+                            "--spring.datasource.url=jdbc:h2:mem:api-load");
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                WeatherLoadGenerator generator = new WeatherLoadGenerator("http://localhost:" + port + "/v1/api/weather/%s",
+                        cityMix, CLIENTS, Duration.ofSeconds(10));
+
+                LoadReport report = generator.run(WARM_UP, MEASURED);
+
+                System.out.printf("%d clients, %d cities, zipf %.2f (top 10 cities take %.0f%% of requests), upstream median %d ms p99 %d ms%n",
+                        CLIENTS, CITIES, ZIPF_EXPONENT, cityMix.share(10) * 100, UPSTREAM_MEDIAN.toMillis(), UPSTREAM_P99.toMillis());
+                System.out.println(report);
+                System.out.printf("upstream calls %d, errors %d, peak in flight %d%n", stub.calls(), stub.errors(), stub.peakInFlight());
+
+                assertTrue(report.requests() > 0);
+                assertEquals(0, report.count(0), "requests without a response");
+                assertTrue(report.count(200) > report.requests() * 0.9, "fewer than 90% of requests answered 200");
+            } finally {
+                context.close();
+            }
+        }
+    }
+}
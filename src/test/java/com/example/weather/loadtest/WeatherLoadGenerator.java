@@ -0,0 +1,149 @@
+package com.example.weather.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives a weather endpoint with a fixed number of clients, each sending its next request as soon as the
+ * previous one is answered, for a warm-up and then a measured period. Cities come from a {@link ZipfCityMix}.
+ * Latencies are kept per client and merged once the run ends, so measuring does not add contention.
+ */
+public final class WeatherLoadGenerator {
+    private final String urlTemplate;
+    private final ZipfCityMix cityMix;
+    private final int clients;
+    private final Duration requestTimeout;
+
+    /**
+     * @param urlTemplate the request url with %s where the city goes, e.g. http://localhost:8080/v1/api/weather/%s
+     */
+    public WeatherLoadGenerator(String urlTemplate, ZipfCityMix cityMix, int clients, Duration requestTimeout) {
+        this.urlTemplate = urlTemplate;
+        this.cityMix = cityMix;
+        this.clients = clients;
+        this.requestTimeout = requestTimeout;
+    }
+
+    public LoadReport run(Duration warmUp, Duration measured) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(executor)
+                     .build()) {
+            long start = System.nanoTime();
+            long measureFrom = start + warmUp.toNanos();
+            long measureUntil = measureFrom + measured.toNanos();
+            List<Future<ClientResult>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> runClient(httpClient, measureFrom, measureUntil)));
+            }
+
+            ClientResult total = new ClientResult();
+            for (Future<ClientResult> result : results) {
+                total.merge(result.get());
+            }
+            return total.report(measured);
+        }
+    }
+
+    private ClientResult runClient(HttpClient httpClient, long measureFrom, long measureUntil) throws InterruptedException {
+        ClientResult result = new ClientResult();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < measureUntil) {
+            String city = cityMix.next(random);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(urlTemplate.formatted(URLEncoder.encode(city, StandardCharsets.UTF_8))))
+                    .timeout(requestTimeout)
+                    .build();
+            long sent = System.nanoTime();
+            int status;
+            try {
+                status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                // connection errors and timeouts are reported as status 0
+                status = 0;
+            }
+            long answered = System.nanoTime();
+            if (sent >= measureFrom && answered <= measureUntil) {
+                result.record(status, answered - sent);
+            }
+        }
+        return result;
+    }
+
+    private static final class ClientResult {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+
+        void record(int status, long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            statuses.merge(status, 1L, Long::sum);
+        }
+
+        void merge(ClientResult other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            other.statuses.forEach((status, requests) -> statuses.merge(status, requests, Long::sum));
+        }
+
+        LoadReport report(Duration measured) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new LoadReport(count, count / (measured.toNanos() / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted.length == 0 ? Duration.ZERO : Duration.ofNanos(sorted[sorted.length - 1]),
+                    Map.copyOf(statuses));
+        }
+
+        private static Duration percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return Duration.ZERO;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return Duration.ofNanos(sorted[Math.max(0, index)]);
+        }
+    }
+
+    /**
+     * Requests answered in the measured period. Statuses maps each HTTP status to its request count, 0 is a request
+     * that got no response.
+     */
+    public record LoadReport(long requests, double throughput, Duration p50, Duration p90, Duration p99, Duration p999,
+                             Duration max, Map<Integer, Long> statuses) {
+
+        public long count(int status) {
+            return statuses.getOrDefault(status, 0L);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%10d req %10.1f req/s  p50 %8.2f ms  p90 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms  statuses %s",
+                    requests, throughput, millis(p50), millis(p90), millis(p99), millis(p999), millis(max), new TreeMap<>(statuses));
+        }
+
+        private static double millis(Duration duration) {
+            return duration.toNanos() / 1e6;
+        }
+    }
+}
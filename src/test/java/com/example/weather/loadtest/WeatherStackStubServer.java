@@ -0,0 +1,346 @@
+package com.example.weather.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local weatherstack /current endpoint for load tests, so they run offline and without a key.
+ * Any query is answered with a full weatherstack payload for a made-up city of that name (coordinates,
+ * temperature and local time included), after a latency drawn from a {@link LatencyDistribution}.
+ * A share of the calls can be answered with weatherstack error payloads, with HTTP 503, or with a body
+ * that stalls half way. Each request is served on its own thread, so latency never queues calls.
+ */
+public final class WeatherStackStubServer implements AutoCloseable {
+    private static final DateTimeFormatter LOCAL_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    static {
+        // the jdk server keeps 200 idle keep-alive connections and closes the rest, so a client with a bigger pool
+        // reuses closed connections. Read once per JVM, when the first server is created
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "10000");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double serverErrorRate;
+    private final double slowBodyRate;
+    private final Duration slowBodyStall;
+    private final Set<String> unknownCities;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private WeatherStackStubServer(Builder builder) throws IOException {
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.serverErrorRate = builder.serverErrorRate;
+        this.slowBodyRate = builder.slowBodyRate;
+        this.slowBodyStall = builder.slowBodyStall;
+        this.unknownCities = Set.copyOf(builder.unknownCities);
+        this.executor = builder.virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", builder.port), builder.backlog);
+        server.setExecutor(executor);
+        server.createContext("/current", this::handle);
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The value for weather-stack.api-url.
+     */
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/current";
+    }
+
+    public long calls() {
+        return calls.get();
+    }
+
+    public long errors() {
+        return errors.get();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        calls.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try (exchange) {
+            sleep(latency.next(ThreadLocalRandom.current()));
+            String query = query(exchange.getRequestURI());
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < serverErrorRate) {
+                errors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String body;
+            if (query == null || query.isBlank() || unknownCities.contains(query.toLowerCase(Locale.ROOT))) {
+                errors.incrementAndGet();
+                body = errorJson(615, "request_failed", "Your API request failed. Please try again or contact support.");
+            } else if (roll < serverErrorRate + errorRate) {
+                errors.incrementAndGet();
+                body = errorJson(104, "usage_limit_reached", "Your monthly API request volume has been reached. Please upgrade your plan.");
+            } else {
+                body = weatherJson(query);
+            }
+            write(exchange, body.getBytes(StandardCharsets.UTF_8), roll >= 1 - slowBodyRate);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void write(HttpExchange exchange, byte[] body, boolean slow) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json; Charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream responseBody = exchange.getResponseBody();
+        if (slow) {
+            int half = body.length / 2;
+            responseBody.write(body, 0, half);
+            responseBody.flush();
+            sleep(slowBodyStall);
+            responseBody.write(body, half, body.length - half);
+        } else {
+            responseBody.write(body);
+        }
+        responseBody.flush();
+    }
+
+    private static String query(URI uri) {
+        String rawQuery = uri.getRawQuery();
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.startsWith("query=")) {
+                return URLDecoder.decode(parameter.substring("query=".length()), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The same query always gets the same city and coordinates. A query of coordinates ("36.54,32.00") is
+     * answered with those coordinates, the temperature moves a little from call to call.
+     */
+    static String weatherJson(String query) {
+        Random city = new Random(query.toLowerCase(Locale.ROOT).hashCode());
+        double latitude = city.nextDouble(-60, 70);
+        double longitude = city.nextDouble(-180, 180);
+        String name = Character.toUpperCase(query.charAt(0)) + query.substring(1);
+        String[] coordinates = query.split(",");
+        if (coordinates.length == 2) {
+            try {
+                latitude = Double.parseDouble(coordinates[0].trim());
+                longitude = Double.parseDouble(coordinates[1].trim());
+                name = String.format(Locale.ROOT, "Place %.2f %.2f", latitude, longitude);
+            } catch (NumberFormatException e) {
+                // a city name with a comma, e.g. "Antalya, Turkey"
+                name = coordinates[0].trim();
+            }
+        }
+        int temperature = city.nextInt(-5, 35) + ThreadLocalRandom.current().nextInt(-2, 3);
+        LocalDateTime localTime = LocalDateTime.now();
+        // language=json
+        return String.format(Locale.ROOT, """
+                {
+                    "request": {"type": "City", "query": "%1$s", "language": "en", "unit": "m"},
+                    "location": {
+                        "name": "%1$s",
+                        "country": "Stubland",
+                        "region": "%1$s",
+                        "lat": "%2$.3f",
+                        "lon": "%3$.3f",
+                        "timezone_id": "Etc/UTC",
+                        "localtime": "%4$s",
+                        "localtime_epoch": %5$d,
+                        "utc_offset": "0.0"
+                    },
+                    "current": {
+                        "observation_time": "12:00 PM",
+                        "temperature": %6$d,
+                        "weather_code": 113,
+                        "weather_icons": ["https://assets.weatherstack.com/images/wsymbols01_png_64/wsymbol_0001_sunny.png"],
+                        "weather_descriptions": ["Sunny"],
+                        "wind_speed": 5,
+                        "wind_degree": 150,
+                        "wind_dir": "SSE",
+                        "pressure": 1015,
+                        "precip": 0,
+                        "humidity": 55,
+                        "cloudcover": 0,
+                        "feelslike": %6$d,
+                        "uv_index": 6,
+                        "visibility": 10,
+                        "is_day": "yes"
+                    }
+                }
+                """, name, latitude, longitude, LOCAL_TIME_FORMATTER.format(localTime), localTime.toEpochSecond(ZoneOffset.UTC), temperature);
+    }
+
+    static String errorJson(int code, String type, String info) {
+        // language=json
+        return """
+                {
+                    "success": false,
+                    "error": {"code": %d, "type": "%s", "info": "%s"}
+                }
+                """.formatted(code, type, info);
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * How long the stub takes before it answers.
+     */
+    @FunctionalInterface
+    public interface LatencyDistribution {
+
+        Duration next(Random random);
+
+        static LatencyDistribution fixed(Duration latency) {
+            return random -> latency;
+        }
+
+        static LatencyDistribution uniform(Duration min, Duration max) {
+            return random -> Duration.ofNanos(random.nextLong(min.toNanos(), max.toNanos() + 1));
+        }
+
+        /**
+         * Long tailed like a real remote api: half of the calls take less than median, 1% take more than p99.
+         */
+        static LatencyDistribution logNormal(Duration median, Duration p99) {
+            double mu = Math.log(median.toNanos());
+            // 2.326 is the 99th percentile of the standard normal distribution
+            double sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+            return random -> Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+        }
+    }
+
+    public static final class Builder {
+        private int port;
+        private int backlog = 1000;
+        private LatencyDistribution latency = LatencyDistribution.fixed(Duration.ZERO);
+        private double errorRate;
+        private double serverErrorRate;
+        private double slowBodyRate;
+        private Duration slowBodyStall = Duration.ZERO;
+        private boolean virtualThreads;
+        private final Set<String> unknownCities = new HashSet<>();
+
+        private Builder() {
+        }
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * Serves calls on virtual threads, so the stub does not show in the JVM's thread count. By default they are
+         * served on platform threads, so the stub behaves like a remote server and never competes for the carrier
+         * threads of an app running on virtual threads.
+         */
+        public Builder virtualThreads() {
+            this.virtualThreads = true;
+            return this;
+        }
+
+        public Builder latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Share of the calls answered with weatherstack's usage_limit_reached error payload (HTTP 200, like weatherstack).
+         */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Share of the calls answered with HTTP 503 and no body.
+         */
+        public Builder serverErrorRate(double serverErrorRate) {
+            this.serverErrorRate = serverErrorRate;
+            return this;
+        }
+
+        /**
+         * Share of the calls whose body stalls for stall after its first half.
+         */
+        public Builder slowBody(double slowBodyRate, Duration stall) {
+            this.slowBodyRate = slowBodyRate;
+            this.slowBodyStall = stall;
+            return this;
+        }
+
+        /**
+         * Queries answered with weatherstack's request_failed error, as for a city it can not resolve.
+         */
+        public Builder unknownCities(String... cities) {
+            for (String city : cities) {
+                unknownCities.add(city.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        public WeatherStackStubServer start() throws IOException {
+            return new WeatherStackStubServer(this);
+        }
+    }
+}
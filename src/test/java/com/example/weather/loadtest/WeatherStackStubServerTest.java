@@ -0,0 +1,96 @@
+package com.example.weather.loadtest;
+
+import com.example.weather.client.WeatherStackResponseDecoder;
+import com.example.weather.dto.WeatherReading;
+import com.example.weather.exception.WeatherStackApiException;
+import com.example.weather.loadtest.WeatherStackStubServer.LatencyDistribution;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherStackStubServerTest {
+
+    private final WeatherStackResponseDecoder decoder = new WeatherStackResponseDecoder(new ObjectMapper());
+
+    @Test
+    void testStub_shouldAnswerWithWeatherstackPayloadsTheServiceDecodes() throws Exception {
+        try (WeatherStackStubServer stub = WeatherStackStubServer.builder().unknownCities("Atlantis").start();
+             HttpClient httpClient = HttpClient.newHttpClient()) {
+            WeatherReading izmir = decoder.decode(get(httpClient, stub.url() + "?access_key=key&query=Izmir").body());
+            WeatherReading sameIzmir = decoder.decode(get(httpClient, stub.url() + "?access_key=key&query=izmir").body());
+            WeatherReading point = decoder.decode(get(httpClient, stub.url() + "?access_key=key&query=36.54,32.00").body());
+
+            assertEquals("Izmir", izmir.cityName());
+            assertEquals(izmir.latitude(), sameIzmir.latitude());
+            assertEquals(36.54, point.latitude());
+            assertEquals(32.0, point.longitude());
+            assertThatThrownBy(() -> decoder.decode(get(httpClient, stub.url() + "?access_key=key&query=Atlantis").body()))
+                    .isInstanceOf(WeatherStackApiException.class);
+            assertEquals(4, stub.calls());
+            assertEquals(1, stub.errors());
+        }
+    }
+
+    @Test
+    void testStub_whenErrorsAndSlowBodiesAreInjected_shouldAnswerWithThem() throws Exception {
+        try (WeatherStackStubServer failing = WeatherStackStubServer.builder().serverErrorRate(1).start();
+             WeatherStackStubServer slow = WeatherStackStubServer.builder()
+                     .latency(LatencyDistribution.fixed(Duration.ofMillis(100)))
+                     .slowBody(1, Duration.ofMillis(200))
+                     .start();
+             HttpClient httpClient = HttpClient.newHttpClient()) {
+            assertEquals(503, get(httpClient, failing.url() + "?query=Izmir").statusCode());
+
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = get(httpClient, slow.url() + "?query=Izmir");
+            assertEquals("Izmir", decoder.decode(response.body()).cityName());
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 300);
+        }
+    }
+
+    @Test
+    void testLogNormal_shouldMatchMedianAndP99() {
+        LatencyDistribution latency = LatencyDistribution.logNormal(Duration.ofMillis(100), Duration.ofMillis(1000));
+        Random random = new Random(42);
+        long[] samples = new long[100_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = latency.next(random).toMillis();
+        }
+        Arrays.sort(samples);
+
+        assertEquals(100, samples[samples.length / 2], 5);
+        assertEquals(1000, samples[samples.length * 99 / 100], 60);
+    }
+
+    @Test
+    void testZipfCityMix_shouldAskForTopCitiesInProportionToTheirRank() {
+        ZipfCityMix cityMix = ZipfCityMix.of(1000, 1.0);
+        Random random = new Random(42);
+        Map<String, Integer> requests = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            requests.merge(cityMix.next(random), 1, Integer::sum);
+        }
+
+        // with exponent 1 the first city is asked for twice as often as the second
+        assertEquals(2.0, requests.get("City1") / (double) requests.get("City2"), 0.1);
+        assertEquals(cityMix.share(1), requests.get("City1") / 100_000.0, 0.01);
+        assertTrue(cityMix.share(10) > 0.35);
+    }
+
+    private static HttpResponse<byte[]> get(HttpClient httpClient, String url) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.weather.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Picks cities the way real traffic asks for them: the city of rank k is asked for in proportion to 1/k^exponent,
+ * so a few cities take most of the requests and the rest form a long tail. An exponent around 1 is typical.
+ */
+public final class ZipfCityMix {
+    private final List<String> cities;
+    private final double[] cumulative;
+
+    public ZipfCityMix(List<String> cities, double exponent) {
+        this.cities = List.copyOf(cities);
+        this.cumulative = new double[cities.size()];
+        double total = 0;
+        for (int rank = 1; rank <= cities.size(); rank++) {
+            total += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    /**
+     * count made-up cities, "City1" being the most asked for.
+     */
+    public static ZipfCityMix of(int count, double exponent) {
+        return new ZipfCityMix(IntStream.rangeClosed(1, count).mapToObj(rank -> "City" + rank).toList(), exponent);
+    }
+
+    public String next(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return cities.get(Math.min(index < 0 ? -index - 1 : index, cities.size() - 1));
+    }
+
+    /**
+     * Share of the requests that go to the most asked for count cities.
+     */
+    public double share(int count) {
+        return count <= 0 ? 0 : cumulative[Math.min(count, cumulative.length) - 1];
+    }
+
+    public int size() {
+        return cities.size();
+    }
+}
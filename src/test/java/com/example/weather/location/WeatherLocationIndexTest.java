@@ -0,0 +1,94 @@
+package com.example.weather.location;
+
+import com.example.weather.TestSupport;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherRepository;
+import com.example.weather.service.WeatherStoredEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WeatherLocationIndexTest extends TestSupport {
+
+    private WeatherRepository weatherRepository;
+    private WeatherLocationIndex locationIndex;
+
+    @BeforeEach
+    void setUp() {
+        weatherRepository = mock(WeatherRepository.class);
+        // 25 km radius, 3 cities at most
+        locationIndex = new WeatherLocationIndex(weatherRepository, new SimpleMeterRegistry(), 25, 3);
+    }
+
+    @Test
+    void testNearest_shouldReturnNearestCityWithinRadiusOnly() {
+        store("antalya", 36.900, 30.700, 18);
+        store("kemer", 36.600, 30.560, 20);
+
+        // Konyaaltı beach, 7 km from the center of Antalya
+        assertEquals("antalya", locationIndex.nearest(36.865, 30.630).orElseThrow().city());
+        assertEquals("kemer", locationIndex.nearest(36.620, 30.560).orElseThrow().city());
+        // Alanya, 115 km away
+        assertTrue(locationIndex.nearest(36.540, 32.000).isEmpty());
+    }
+
+    @Test
+    void testNearest_whenCityIsAcrossCellBorders_shouldFindIt() {
+        // Taveuni lies on the antimeridian
+        store("taveuni", -16.850, 179.990, 27);
+        store("tromso", 69.650, 18.950, 4);
+
+        assertEquals("taveuni", locationIndex.nearest(-16.900, -179.990).orElseThrow().city());
+        // at 70 degrees north a degree of longitude is 38 km, the point is 3 cells to the east
+        assertEquals("tromso", locationIndex.nearest(69.650, 19.400).orElseThrow().city());
+    }
+
+    @Test
+    void testOnWeatherStored_shouldKeepLatestReportAndIgnoreReportsWithoutCoordinates() {
+        store("antalya", 36.900, 30.700, 18);
+        store("antalya", 36.900, 30.700, 21);
+        locationIndex.onWeatherStored(new WeatherStoredEvent(new WeatherEntity("izmir", "Izmir", "Turkey", 25,
+                getCurrentLocalDateTime(), getCurrentLocalDateTime())));
+
+        assertEquals(21, locationIndex.nearest(36.900, 30.700).orElseThrow().weather().temperature());
+        assertEquals(1, locationIndex.size());
+    }
+
+    @Test
+    void testRun_shouldLoadLatestLocatedReportsUpToMaxCities() {
+        when(weatherRepository.findLatestLocated(Limit.of(3))).thenReturn(List.of(
+                entity("antalya", 36.900, 30.700, 18, getCurrentLocalDateTime()),
+                entity("izmir", 38.420, 27.140, 25, getCurrentLocalDateTime())));
+
+        locationIndex.run(null);
+        store("ankara", 39.930, 32.860, 15);
+        store("istanbul", 41.010, 28.980, 17);
+
+        assertEquals(3, locationIndex.size());
+        assertEquals("izmir", locationIndex.nearest(38.400, 27.100).orElseThrow().city());
+        assertTrue(locationIndex.nearest(41.010, 28.980).isEmpty());
+    }
+
+    @Test
+    void testDistanceKm_shouldReturnGreatCircleDistance() {
+        // Antalya to Izmir is about 357 km
+        assertEquals(357, WeatherLocationIndex.distanceKm(36.900, 30.700, 38.420, 27.140), 5);
+    }
+
+    private void store(String city, double latitude, double longitude, int temperature) {
+        locationIndex.onWeatherStored(new WeatherStoredEvent(entity(city, latitude, longitude, temperature, getCurrentLocalDateTime())));
+    }
+
+    private static WeatherEntity entity(String city, double latitude, double longitude, int temperature, LocalDateTime updatedTime) {
+        return new WeatherEntity(city, city, "Turkey", temperature, updatedTime, updatedTime, latitude, longitude);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.weather.quota;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalUpstreamQuotaStoreTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now.get());
+        }
+    };
+
+    @Test
+    void testTryConsume_whenBurstIsSpent_shouldDenyUntilNextTokenIsRefilled() {
+        // 2 tokens, refilled at one token per second
+        LocalUpstreamQuotaStore quotaStore = new LocalUpstreamQuotaStore(2, 0.001, clock);
+
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(1000, quotaStore.tryConsume());
+
+        now.addAndGet(400);
+        assertEquals(600, quotaStore.tryConsume());
+
+        now.addAndGet(600);
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(1000, quotaStore.tryConsume());
+    }
+
+    @Test
+    void testTryConsume_whenIdleForLong_shouldNotRefillOverCapacity() {
+        LocalUpstreamQuotaStore quotaStore = new LocalUpstreamQuotaStore(2, 0.001, clock);
+
+        now.addAndGet(60_000);
+
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(1000, quotaStore.tryConsume());
+    }
+
+    @Test
+    void testRefund_shouldPutTokenBackUpToCapacity() {
+        LocalUpstreamQuotaStore quotaStore = new LocalUpstreamQuotaStore(2, 0.001, clock);
+
+        quotaStore.refund();
+        assertEquals(0, quotaStore.tryConsume());
+        quotaStore.refund();
+
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(1000, quotaStore.tryConsume());
+    }
+}
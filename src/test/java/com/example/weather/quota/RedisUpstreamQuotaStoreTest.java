@@ -0,0 +1,99 @@
+package com.example.weather.quota;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the token bucket scripts on a real Redis, the same one docker compose starts:
+ * mvn test -Dgroups=redis -Dsurefire.excludedGroups= (REDIS_HOST and REDIS_PORT default to localhost:6379)
+ */
+@Tag("redis")
+class RedisUpstreamQuotaStoreTest {
+
+    private static final String BUCKET_KEY = "weather:quota:upstream";
+    // one token per 100 ms
+    private static final double TOKENS_PER_MILLI = 0.01;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        String host = System.getenv().getOrDefault("REDIS_HOST", "localhost");
+        int port = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.delete(BUCKET_KEY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisTemplate.delete(BUCKET_KEY);
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void testTryConsume_whenBurstIsSpent_shouldDenyUntilNextTokenIsRefilled() throws InterruptedException {
+        RedisUpstreamQuotaStore quotaStore = new RedisUpstreamQuotaStore(redisTemplate, 2, TOKENS_PER_MILLI);
+
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(0, quotaStore.tryConsume());
+        long waitMillis = quotaStore.tryConsume();
+        assertTrue(waitMillis > 0 && waitMillis <= 100, "wait was " + waitMillis);
+
+        Thread.sleep(waitMillis + 20);
+
+        assertEquals(0, quotaStore.tryConsume());
+        assertTrue(quotaStore.tryConsume() > 0);
+    }
+
+    @Test
+    void testTryConsume_whenIdleForLong_shouldNotRefillOverCapacity() throws InterruptedException {
+        RedisUpstreamQuotaStore quotaStore = new RedisUpstreamQuotaStore(redisTemplate, 2, TOKENS_PER_MILLI);
+        assertEquals(0, quotaStore.tryConsume());
+
+        // long enough for 5 tokens without the cap
+        Thread.sleep(500);
+
+        assertEquals(0, quotaStore.tryConsume());
+        assertEquals(0, quotaStore.tryConsume());
+        assertTrue(quotaStore.tryConsume() > 0);
+    }
+
+    @Test
+    void testTryConsume_whenTwoInstancesShareTheBucket_shouldSpendOneBucket() {
+        RedisUpstreamQuotaStore firstInstance = new RedisUpstreamQuotaStore(redisTemplate, 2, TOKENS_PER_MILLI);
+        RedisUpstreamQuotaStore secondInstance = new RedisUpstreamQuotaStore(redisTemplate, 2, TOKENS_PER_MILLI);
+
+        assertEquals(0, firstInstance.tryConsume());
+        assertEquals(0, secondInstance.tryConsume());
+
+        assertTrue(firstInstance.tryConsume() > 0);
+        assertTrue(secondInstance.tryConsume() > 0);
+    }
+
+    @Test
+    void testRefund_shouldPutTokenBackForEveryInstanceUpToCapacity() {
+        RedisUpstreamQuotaStore firstInstance = new RedisUpstreamQuotaStore(redisTemplate, 2, TOKENS_PER_MILLI);
+        RedisUpstreamQuotaStore secondInstance = new RedisUpstreamQuotaStore(redisTemplate, 2, TOKENS_PER_MILLI);
+
+        assertEquals(0, firstInstance.tryConsume());
+        assertEquals(0, firstInstance.tryConsume());
+        firstInstance.refund();
+        firstInstance.refund();
+        firstInstance.refund();
+
+        assertEquals(0, secondInstance.tryConsume());
+        assertEquals(0, secondInstance.tryConsume());
+        assertTrue(secondInstance.tryConsume() > 0);
+    }
+}
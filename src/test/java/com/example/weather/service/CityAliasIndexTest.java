@@ -0,0 +1,77 @@
+package com.example.weather.service;
+
+import com.example.weather.model.CityAliasEntity;
+import com.example.weather.repositroy.CityAliasRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class CityAliasIndexTest {
+
+    private CityAliasRepository cityAliasRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private CityAliasIndex cityAliasIndex;
+
+    @BeforeEach
+    void setUp() {
+        cityAliasRepository = mock(CityAliasRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cityAliasIndex = new CityAliasIndex(cityAliasRepository, new CityNameNormalizer(), 100, meterRegistry);
+        when(cityAliasRepository.findById(anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void testResolve_whenSpellingIsUnknown_shouldReturnNormalizedName() {
+        assertEquals("antalya", cityAliasIndex.resolve(" ANTALYA "));
+        assertEquals("antalya", cityAliasIndex.resolve("Antalya"));
+
+        verify(cityAliasRepository, times(1)).findById("antalya");
+    }
+
+    @Test
+    void testRegister_whenWeatherStackResolvedSpelling_shouldResolveEverySpellingToCanonicalName() {
+        cityAliasIndex.resolve("Antalya");
+
+        String canonicalName = cityAliasIndex.register("antalya", "Antalya", "Turkey");
+
+        assertEquals("antalya, turkey", canonicalName);
+        assertEquals("antalya, turkey", cityAliasIndex.resolve("ANTALYA"));
+        assertEquals("antalya, turkey", cityAliasIndex.resolve("Antalya, Turkey"));
+        ArgumentCaptor<CityAliasEntity> saved = ArgumentCaptor.forClass(CityAliasEntity.class);
+        verify(cityAliasRepository).save(saved.capture());
+        assertEquals("antalya", saved.getValue().getAlias());
+        assertEquals("antalya, turkey", saved.getValue().getCanonicalName());
+    }
+
+    @Test
+    void testRegister_whenAliasIsAlreadyKnown_shouldNotSaveItAgain() {
+        when(cityAliasRepository.findById("antalya")).thenReturn(Optional.of(new CityAliasEntity("antalya", "antalya, turkey")));
+        cityAliasIndex.resolve("Antalya");
+
+        cityAliasIndex.register("antalya", "Antalya", "Turkey");
+
+        verify(cityAliasRepository, never()).save(any());
+    }
+
+    @Test
+    void testRecordLookup_shouldCountLookupsByHowTheKeyWasMatched() {
+        cityAliasIndex.recordLookup("antalya, turkey", "antalya, turkey", true);
+        cityAliasIndex.recordLookup("Antalya, Turkey", "antalya, turkey", true);
+        cityAliasIndex.recordLookup("Antalya", "antalya, turkey", false);
+
+        assertEquals(1, lookups("exact", "hit"));
+        assertEquals(1, lookups("normalized", "hit"));
+        assertEquals(1, lookups("alias", "miss"));
+        assertEquals(0, lookups("alias", "hit"));
+    }
+
+    private double lookups(String match, String result) {
+        return meterRegistry.get("weather.cache.lookup").tag("match", match).tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.weather.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CityNameNormalizerTest {
+
+    private final CityNameNormalizer cityNameNormalizer = new CityNameNormalizer();
+
+    @Test
+    void testNormalize_whenSpellingsDifferInCaseAndWhitespace_shouldReturnSameName() {
+        assertEquals("antalya", cityNameNormalizer.normalize("Antalya"));
+        assertEquals("antalya", cityNameNormalizer.normalize(" ANTALYA\t"));
+        assertEquals("new york", cityNameNormalizer.normalize("New   York"));
+    }
+
+    @Test
+    void testNormalize_whenNameHasAccentsOrTurkishLetters_shouldFoldThem() {
+        assertEquals("izmir", cityNameNormalizer.normalize("İzmir"));
+        assertEquals("diyarbakir", cityNameNormalizer.normalize("DİYARBAKIR"));
+        assertEquals("diyarbakir", cityNameNormalizer.normalize("Diyarbakır"));
+        assertEquals("sao paulo", cityNameNormalizer.normalize("São Paulo"));
+    }
+
+    @Test
+    void testNormalize_whenNameIsAlreadyNormalized_shouldReturnSameInstance() {
+        String city = "antalya, turkey";
+
+        assertSame(city, cityNameNormalizer.normalize(city));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.weather.service;
+
+import com.example.weather.TestSupport;
+import com.example.weather.constants.Constants;
+import com.example.weather.dto.WeatherDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotCityRefreshSchedulerTest extends TestSupport {
+
+    private final HotCityTracker hotCityTracker = new HotCityTracker(100, 1.0);
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final TaskScheduler taskScheduler = mock(TaskScheduler.class);
+    private Instant now;
+    private HotCityRefreshScheduler refreshScheduler;
+
+    @BeforeEach
+    void setUp() {
+        Constants constants = new Constants();
+        constants.setApiCallLimit(30);
+        now = getCurrentInstant();
+        Clock clock = Clock.fixed(now, Clock.systemDefaultZone().getZone());
+        // 5 hottest cities, 3 refreshes per minute, refreshed 2 minutes before the 30 minute limit
+        refreshScheduler = new HotCityRefreshScheduler(hotCityTracker, weatherService, taskScheduler, clock,
+                new SimpleMeterRegistry(), 5, 3, 60_000, 120_000);
+    }
+
+    @Test
+    void testRefreshHotCities_shouldScheduleDueCitiesWithinBudgetSpreadOverThePeriod() {
+        record("Antalya", 5);
+        record("Istanbul", 4);
+        record("Izmir", 3);
+        record("Ankara", 2);
+        record("Bursa", 1);
+        // deadline 1 minute and 30 seconds ago: overdue
+        report("Antalya", getCurrentLocalDateTime().minusMinutes(29));
+        report("Izmir", getCurrentLocalDateTime().minusMinutes(28).minusSeconds(30));
+        // fetched just now: not due in this period, does not take a share of the budget
+        report("Istanbul", getCurrentLocalDateTime());
+        // deadline in 10 seconds
+        report("Ankara", getCurrentLocalDateTime().minusMinutes(28).plusSeconds(10));
+        // overdue, but over the budget
+        report("Bursa", getCurrentLocalDateTime().minusMinutes(29));
+
+        refreshScheduler.refreshHotCities();
+
+        ArgumentCaptor<Runnable> refreshes = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Instant> startTimes = ArgumentCaptor.forClass(Instant.class);
+        verify(taskScheduler, times(3)).schedule(refreshes.capture(), startTimes.capture());
+        // the overdue cities take one slot each instead of all starting now, the city due in 10 seconds keeps its deadline
+        assertEquals(List.of(now, now.plus(Duration.ofSeconds(20)), now.plus(Duration.ofSeconds(10))), startTimes.getAllValues());
+
+        refreshes.getAllValues().forEach(Runnable::run);
+        verify(weatherService).refreshInBackground("Antalya");
+        verify(weatherService).refreshInBackground("Izmir");
+        verify(weatherService).refreshInBackground("Ankara");
+        verify(weatherService, never()).refreshInBackground("Istanbul");
+        verify(weatherService, never()).refreshInBackground("Bursa");
+    }
+
+    @Test
+    void testRefreshHotCities_whenAllCitiesAreOverdue_shouldSpendTheBudgetOneSlotApart() {
+        for (String city : List.of("Antalya", "Istanbul", "Izmir")) {
+            record(city, 1);
+            report(city, getCurrentLocalDateTime().minusHours(1));
+        }
+
+        refreshScheduler.refreshHotCities();
+
+        ArgumentCaptor<Instant> startTimes = ArgumentCaptor.forClass(Instant.class);
+        verify(taskScheduler, times(3)).schedule(any(Runnable.class), startTimes.capture());
+        assertEquals(List.of(now, now.plus(Duration.ofSeconds(20)), now.plus(Duration.ofSeconds(40))), startTimes.getAllValues());
+    }
+
+    @Test
+    void testRefreshHotCities_whenNoCityIsDue_shouldScheduleNothing() {
+        record("Antalya", 1);
+        report("Antalya", getCurrentLocalDateTime());
+        record("Istanbul", 1);
+        when(weatherService.findLatestWeather("Istanbul")).thenReturn(Optional.empty());
+
+        refreshScheduler.refreshHotCities();
+
+        verify(taskScheduler, never()).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    private void record(String city, int times) {
+        for (int i = 0; i < times; i++) {
+            hotCityTracker.record(city);
+        }
+    }
+
+    private void report(String city, LocalDateTime updatedTime) {
+        when(weatherService.findLatestWeather(city)).thenReturn(Optional.of(new WeatherDto(city, "Turkey", 18, updatedTime)));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.weather.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HotCityTrackerTest {
+
+    @Test
+    void testTopCities_shouldReturnMostRequestedCitiesInOrder() {
+        HotCityTracker hotCityTracker = new HotCityTracker(100, 0.5);
+        record(hotCityTracker, "Antalya", 5);
+        record(hotCityTracker, "Istanbul", 9);
+        record(hotCityTracker, "Izmir", 2);
+
+        assertEquals(List.of("Istanbul", "Antalya"), hotCityTracker.topCities(2));
+    }
+
+    @Test
+    void testDecay_shouldForgetColdCitiesAndLetRecentTrafficOvertakeOldTraffic() {
+        HotCityTracker hotCityTracker = new HotCityTracker(100, 0.5);
+        record(hotCityTracker, "Antalya", 8);
+        record(hotCityTracker, "Izmir", 1);
+
+        hotCityTracker.decay();
+        hotCityTracker.decay();
+        record(hotCityTracker, "Istanbul", 3);
+
+        assertEquals(List.of("Istanbul", "Antalya"), hotCityTracker.topCities(3));
+        assertEquals(2, hotCityTracker.size());
+    }
+
+    @Test
+    void testRecord_whenTrackerIsFull_shouldIgnoreNewCities() {
+        HotCityTracker hotCityTracker = new HotCityTracker(1, 0.5);
+        record(hotCityTracker, "Antalya", 1);
+        record(hotCityTracker, "Istanbul", 1);
+
+        assertEquals(List.of("Antalya"), hotCityTracker.topCities(2));
+    }
+
+    private static void record(HotCityTracker hotCityTracker, String city, int times) {
+        for (int i = 0; i < times; i++) {
+            hotCityTracker.record(city);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.weather.service;
+
+import com.example.weather.exception.Error;
+import com.example.weather.exception.ErrorResponse;
+import com.example.weather.exception.WeatherStackApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NegativeWeatherCacheTest {
+
+    private static final WeatherStackApiException UNKNOWN_CITY =
+            new WeatherStackApiException(new ErrorResponse("false", new Error("615", "request_failed", "Your API request failed.")));
+    private static final WeatherStackApiException INVALID_ACCESS_KEY =
+            new WeatherStackApiException(new ErrorResponse("false", new Error("101", "invalid_access_key", "You have not supplied a valid API Access Key.")));
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private NegativeWeatherCache negativeWeatherCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        negativeWeatherCache = new NegativeWeatherCache(60000, 100, new String[]{"601", "615"}, meterRegistry, nanoTime::get);
+    }
+
+    @Test
+    void testFind_whenCityCouldNotBeResolved_shouldReturnItsErrorUntilTtlPasses() {
+        negativeWeatherCache.put("qwerty", UNKNOWN_CITY);
+
+        assertEquals(Optional.of(UNKNOWN_CITY), negativeWeatherCache.find("qwerty"));
+
+        nanoTime.addAndGet(Duration.ofSeconds(61).toNanos());
+        assertTrue(negativeWeatherCache.find("qwerty").isEmpty());
+    }
+
+    @Test
+    void testPut_whenErrorIsNotAboutTheCity_shouldNotCacheIt() {
+        negativeWeatherCache.put("antalya", INVALID_ACCESS_KEY);
+
+        assertTrue(negativeWeatherCache.find("antalya").isEmpty());
+    }
+
+    @Test
+    void testFind_shouldPublishNegativeHitsSeparately() {
+        negativeWeatherCache.put("qwerty", UNKNOWN_CITY);
+
+        negativeWeatherCache.find("qwerty");
+        negativeWeatherCache.find("qwerty");
+        negativeWeatherCache.find("antalya");
+
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", NegativeWeatherCache.NEGATIVE_CACHE_NAME).tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", NegativeWeatherCache.NEGATIVE_CACHE_NAME).tag("result", "miss").functionCounter().count());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.weather.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamRequestCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UpstreamRequestCoalescer requestCoalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        requestCoalescer = new UpstreamRequestCoalescer(meterRegistry);
+    }
+
+    @Test
+    void testExecute_whenConcurrentCallsForSameKey_shouldRunLoaderOnceAndCountCoalescedCalls() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> requestCoalescer.execute("Antalya", () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(releaseLoader);
+                return "weather";
+            })));
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> requestCoalescer.execute("Antalya", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            while (meterRegistry.counter("weather.upstream.coalesced").count() < callers - 1) {
+                Thread.onSpinWait();
+            }
+            releaseLoader.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("weather", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testExecute_whenLoaderFails_shouldPropagateExceptionAndAllowNextLoad() {
+        assertThatThrownBy(() -> requestCoalescer.execute("Antalya", () -> {
+            throw new IllegalStateException("upstream down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertEquals("weather", requestCoalescer.execute("Antalya", () -> "weather"));
+    }
+
+    @Test
+    void testExecuteAsync_whenCallsForSameKeyOverlap_shouldShareOneLoadWithoutBlocking() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = requestCoalescer.executeAsync("Antalya", () -> {
+            loads.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = requestCoalescer.executeAsync("Antalya", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        upstream.complete("weather");
+
+        assertEquals("weather", first.get(5, TimeUnit.SECONDS));
+        assertEquals("weather", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.counter("weather.upstream.coalesced").count());
+        assertEquals("next", requestCoalescer.execute("Antalya", () -> "next"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
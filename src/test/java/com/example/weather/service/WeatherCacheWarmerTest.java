@@ -0,0 +1,38 @@
+package com.example.weather.service;
+
+import com.example.weather.TestSupport;
+import com.example.weather.constants.Constants;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.data.domain.Limit;
+
+import java.time.Clock;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WeatherCacheWarmerTest extends TestSupport {
+
+    @Test
+    void testRun_shouldPutLatestUpToDateReportsIntoCache() {
+        Constants constants = new Constants();
+        constants.setApiCallLimit(30);
+        constants.setWeatherCacheName("weathers");
+        WeatherRepository weatherRepository = mock(WeatherRepository.class);
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager("weathers");
+        Clock clock = Clock.fixed(getCurrentInstant(), Clock.systemDefaultZone().getZone());
+        WeatherEntity antalya = getSavedWeatherEntity("2023-05-19 12:00");
+
+        when(weatherRepository.findLatestUpdatedAfter(getCurrentLocalDateTime().minusMinutes(30), Limit.of(100))).thenReturn(List.of(antalya));
+
+        new WeatherCacheWarmer(weatherRepository, cacheManager, clock, 100).run(new DefaultApplicationArguments());
+
+        assertEquals(WeatherDto.convert(antalya), cacheManager.getCache("weathers").get(requestedCity, WeatherDto.class));
+    }
+}
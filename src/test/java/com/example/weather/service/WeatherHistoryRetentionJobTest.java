@@ -0,0 +1,81 @@
+package com.example.weather.service;
+
+import com.example.weather.TestSupport;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.model.WeatherHourlyRollupEntity;
+import com.example.weather.repositroy.WeatherHourlyRollupRepository;
+import com.example.weather.repositroy.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+class WeatherHistoryRetentionJobTest extends TestSupport {
+
+    @Autowired
+    private WeatherRepository weatherRepository;
+    @Autowired
+    private WeatherHourlyRollupRepository rollupRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private WeatherHistoryRetentionJob retentionJob;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(getCurrentInstant(), Clock.systemDefaultZone().getZone());
+        // one day window, batches of 2 reports so an hour is rolled up over several batches
+        retentionJob = new WeatherHistoryRetentionJob(weatherRepository, rollupRepository, new TransactionTemplate(transactionManager),
+                clock, new SimpleMeterRegistry(), 86_400_000, 2, 0);
+    }
+
+    @Test
+    void testCompactHistory_shouldRollUpReportsOlderThanWindowPerHourAndDeleteThem() {
+        LocalDateTime twoDaysAgo = getCurrentLocalDateTime().minusDays(2).withMinute(0);
+        weatherRepository.saveAll(List.of(
+                report("antalya, turkey", 10, twoDaysAgo.plusMinutes(5)),
+                report("antalya, turkey", 14, twoDaysAgo.plusMinutes(35)),
+                report("antalya, turkey", 15, twoDaysAgo.plusMinutes(50)),
+                report("antalya, turkey", 20, twoDaysAgo.plusHours(1).plusMinutes(10)),
+                report("izmir, turkey", 25, twoDaysAgo.plusMinutes(20)),
+                report("antalya, turkey", 22, getCurrentLocalDateTime().minusMinutes(10))));
+
+        retentionJob.compactHistory();
+
+        List<WeatherHourlyRollupEntity> rollups = rollupRepository.findAll().stream()
+                .sorted(Comparator.comparing(WeatherHourlyRollupEntity::getRequestedCityName).thenComparing(WeatherHourlyRollupEntity::getHourStart))
+                .toList();
+        assertEquals(2, rollups.size());
+        assertRollup(rollups.get(0), twoDaysAgo, 10, 15, 13.0, 3);
+        assertRollup(rollups.get(1), twoDaysAgo.plusHours(1), 20, 20, 20.0, 1);
+
+        // the latest report of each city is kept, however old it is
+        List<WeatherEntity> history = weatherRepository.findAll();
+        assertEquals(2, history.size());
+        assertEquals(List.of(22, 25), history.stream().map(WeatherEntity::getTemperature).sorted().toList());
+    }
+
+    private static void assertRollup(WeatherHourlyRollupEntity rollup, LocalDateTime hourStart, int min, int max, double average, int samples) {
+        assertEquals("antalya, turkey", rollup.getRequestedCityName());
+        assertEquals(hourStart, rollup.getHourStart());
+        assertEquals(min, rollup.getMinTemperature());
+        assertEquals(max, rollup.getMaxTemperature());
+        assertEquals(average, rollup.getAverageTemperature(), 0.001);
+        assertEquals(samples, rollup.getSamples());
+    }
+
+    private static WeatherEntity report(String city, int temperature, LocalDateTime updatedTime) {
+        return new WeatherEntity(city, "City", "Turkey", temperature, updatedTime, updatedTime);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.weather.service;
+
+import com.example.weather.TestSupport;
+import com.example.weather.constants.Constants;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.location.WeatherLocationIndex;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class WeatherLocationServiceTest extends TestSupport {
+
+    private WeatherLocationIndex locationIndex;
+    private WeatherService weatherService;
+    private SimpleMeterRegistry meterRegistry;
+    private WeatherLocationService weatherLocationService;
+
+    @BeforeEach
+    void setUp() {
+        new Constants().setApiCallLimit(30);
+        meterRegistry = new SimpleMeterRegistry();
+        locationIndex = new WeatherLocationIndex(mock(WeatherRepository.class), meterRegistry, 25, 100);
+        weatherService = mock(WeatherService.class);
+        Clock clock = Clock.fixed(getCurrentInstant(), Clock.systemDefaultZone().getZone());
+        weatherLocationService = new WeatherLocationService(locationIndex, weatherService, clock, meterRegistry);
+    }
+
+    @Test
+    void testGetWeather_whenUpToDateCityIsWithinRadius_shouldServeItFromIndex() {
+        store("antalya", getCurrentLocalDateTime().minusMinutes(5));
+
+        WeatherDto weather = weatherLocationService.getWeather(36.865, 30.630);
+
+        assertEquals("antalya", weather.cityName());
+        verifyNoInteractions(weatherService);
+        assertEquals(1, lookups("index"));
+    }
+
+    @Test
+    void testGetWeather_whenNearestCityIsOutdated_shouldLookItUpByName() {
+        store("antalya", getCurrentLocalDateTime().minusMinutes(45));
+        WeatherDto refreshed = new WeatherDto("Antalya", "Turkey", 21, getCurrentLocalDateTime());
+        when(weatherService.getWeather("antalya")).thenReturn(refreshed);
+
+        assertEquals(refreshed, weatherLocationService.getWeather(36.865, 30.630));
+        assertEquals(1, lookups("city"));
+    }
+
+    @Test
+    void testGetWeather_whenNoCityIsWithinRadius_shouldLookUpRoundedCoordinates() {
+        store("antalya", getCurrentLocalDateTime().minusMinutes(5));
+        WeatherDto alanya = new WeatherDto("Alanya", "Turkey", 24, getCurrentLocalDateTime());
+        when(weatherService.getWeather("36.54,32.00")).thenReturn(alanya);
+
+        assertEquals(alanya, weatherLocationService.getWeather(36.5432, 31.9987));
+        assertEquals(1, lookups("coordinates"));
+    }
+
+    private void store(String city, LocalDateTime updatedTime) {
+        locationIndex.onWeatherStored(new WeatherStoredEvent(
+                new WeatherEntity(city, city, "Turkey", 18, updatedTime, updatedTime, 36.900, 30.700)));
+    }
+
+    private double lookups(String source) {
+        return meterRegistry.counter("weather.location.lookup", "source", source).count();
+    }
+}
@@ -5,35 +5,59 @@ import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import com.example.weather.TestSupport;
+import com.example.weather.client.WeatherStackClient;
+import com.example.weather.client.WeatherStackResponseDecoder;
 import com.example.weather.constants.Constants;
+import com.example.weather.dto.BatchWeatherResult;
 import com.example.weather.dto.WeatherDto;
 import com.example.weather.dto.WeatherResponse;
 import com.example.weather.exception.ErrorResponse;
+import com.example.weather.exception.UpstreamQuotaExceededException;
 import com.example.weather.exception.WeatherStackApiException;
 import com.example.weather.model.WeatherEntity;
+import com.example.weather.quota.UpstreamQuota;
 import com.example.weather.repositroy.WeatherRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class WeatherServiceTest extends TestSupport {
 
     private WeatherRepository weatherRepository;
-    private RestTemplate restTemplate;
+    private WeatherStackClient weatherStackClient;
     private ObjectMapper objectMapper;
+    private WeatherRefreshExecutor refreshExecutor;
+    private WeatherWriteBehindQueue writeBehindQueue;
+    private UpstreamQuota upstreamQuota;
+    private CityAliasIndex cityAliasIndex;
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private CacheManager cacheManager;
     private WeatherService weatherService;
 
     @BeforeEach
@@ -41,7 +65,7 @@ class WeatherServiceTest extends TestSupport {
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new ParameterNamesModule());
 
-        restTemplate = mock(RestTemplate.class);
+        weatherStackClient = mock(WeatherStackClient.class);
         weatherRepository = mock(WeatherRepository.class);
         Clock clock = mock(Clock.class);
 
@@ -49,11 +73,25 @@ class WeatherServiceTest extends TestSupport {
         constants.setWeatherStackApiBaseUrl("weather-base-api-url");
         constants.setApiKey("api-key");
         constants.setApiCallLimit(30);
+        constants.setWeatherCacheName("weathers");
+        constants.setStaleWhileRevalidate(false);
+        constants.setBatchMaxConcurrency(2);
 
-        weatherService = new WeatherService(weatherRepository, restTemplate, clock);
+        refreshExecutor = mock(WeatherRefreshExecutor.class);
+        writeBehindQueue = mock(WeatherWriteBehindQueue.class);
+        upstreamQuota = mock(UpstreamQuota.class);
+        cityAliasIndex = mock(CityAliasIndex.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new ConcurrentMapCacheManager("weathers");
+
+        weatherService = new WeatherService(weatherRepository, weatherStackClient, new WeatherStackResponseDecoder(objectMapper), new UpstreamRequestCoalescer(new SimpleMeterRegistry()), upstreamQuota, writeBehindQueue, refreshExecutor, new HotCityTracker(100, 0.5), cityAliasIndex,
+                new NegativeWeatherCache(60000, 100, new String[]{"615"}, new SimpleMeterRegistry()), new WeatherStageMetrics(meterRegistry), eventPublisher, cacheManager, clock);
 
         when(clock.instant()).thenReturn(getCurrentInstant());
         when(clock.getZone()).thenReturn(Clock.systemDefaultZone().getZone());
+        when(cityAliasIndex.resolve(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cityAliasIndex.register(anyString(), anyString(), anyString())).thenAnswer(invocation -> invocation.getArgument(0));
     }
 
     @Test
@@ -64,16 +102,19 @@ class WeatherServiceTest extends TestSupport {
 
         WeatherDto expected = new WeatherDto(savedEntity.getCityName(), savedEntity.getCountry(), savedEntity.getTemperature(), savedEntity.getUpdatedTime());
 
-        when(weatherRepository.findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity)).thenReturn(Optional.empty());
-        when(restTemplate.getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity,String.class)).thenReturn(ResponseEntity.ok(responseJson));
-        when(weatherRepository.save(any(WeatherEntity.class))).thenReturn(savedEntity);
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(responseJson));
 
         WeatherDto actual = this.weatherService.getWeather(requestedCity);
 
         assertEquals(expected,actual);
 
-        verify(restTemplate).getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity, String.class);
-        verify(weatherRepository).save(any(WeatherEntity.class));
+        verify(weatherStackClient).getCurrentWeather(requestedCity);
+        ArgumentCaptor<WeatherEntity> queued = ArgumentCaptor.forClass(WeatherEntity.class);
+        verify(writeBehindQueue).enqueue(queued.capture());
+        assertEquals(36.9, queued.getValue().getLatitude());
+        assertEquals(30.7, queued.getValue().getLongitude());
+        verify(eventPublisher).publishEvent(any(WeatherStoredEvent.class));
     }
 
     @Test
@@ -82,15 +123,39 @@ class WeatherServiceTest extends TestSupport {
         String responseJson = getErrorResponseJson();
         ErrorResponse response = objectMapper.readValue(responseJson, ErrorResponse.class);
 
-        when(weatherRepository.findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity)).thenReturn(Optional.empty());
-        when(restTemplate.getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity, String.class)).thenReturn(ResponseEntity.ok(responseJson));
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(responseJson));
 
         assertThatThrownBy(() -> weatherService.getWeather(requestedCity))
                 .isInstanceOf(WeatherStackApiException.class)
                 .isEqualTo(new WeatherStackApiException(response));
 
-        verify(restTemplate).getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity, String.class);
-        verify(weatherRepository).findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity);
+        verify(weatherStackClient).getCurrentWeather(requestedCity);
+        verify(weatherRepository).findLatestByRequestedCityName(requestedCity);
+        verifyNoMoreInteractions(weatherRepository);
+
+        // an access error is not the city's fault, so the next request asks weatherstack again
+        assertThatThrownBy(() -> weatherService.getWeather(requestedCity)).isInstanceOf(WeatherStackApiException.class);
+        verify(weatherStackClient, times(2)).getCurrentWeather(requestedCity);
+    }
+
+    @Test
+    public void testGetWeather_whenWeatherStackCanNotResolveCity_shouldAnswerNextRequestsWithoutCallingWeatherStackAPI() throws Exception {
+        String requestedCity = "Qwerty";
+        ErrorResponse response = objectMapper.readValue(getUnknownCityResponseJson(), ErrorResponse.class);
+
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(getUnknownCityResponseJson()));
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> weatherService.getWeather(requestedCity))
+                    .isEqualTo(new WeatherStackApiException(response));
+        }
+        assertEquals(List.of(BatchWeatherResult.error(requestedCity, response.error().info())),
+                weatherService.getWeathers(List.of(requestedCity)));
+
+        verify(weatherStackClient, times(1)).getCurrentWeather(requestedCity);
+        verify(weatherRepository, times(1)).findLatestByRequestedCityName(requestedCity);
         verifyNoMoreInteractions(weatherRepository);
     }
 
@@ -98,14 +163,14 @@ class WeatherServiceTest extends TestSupport {
     public void testGetWeather_whenWeatherStackReturnUnknownResponse_shouldThrowRuntimeException() {
         String responseJson = "InvalidResponse";
 
-        when(weatherRepository.findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity)).thenReturn(Optional.empty());
-        when(restTemplate.getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity, String.class)).thenReturn(ResponseEntity.ok(responseJson));
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(responseJson));
 
         assertThatThrownBy(() -> weatherService.getWeather(requestedCity))
                 .isInstanceOf(RuntimeException.class);
 
-        verify(restTemplate).getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity, String.class);
-        verify(weatherRepository).findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity);
+        verify(weatherStackClient).getCurrentWeather(requestedCity);
+        verify(weatherRepository).findLatestByRequestedCityName(requestedCity);
         verifyNoMoreInteractions(weatherRepository);
     }
 
@@ -117,14 +182,14 @@ class WeatherServiceTest extends TestSupport {
 
         WeatherDto expected = new WeatherDto(savedEntity.getCityName(), savedEntity.getCountry(), savedEntity.getTemperature(), savedEntity.getUpdatedTime());
 
-        when(weatherRepository.findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity)).thenReturn(Optional.of(savedEntity));
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.of(WeatherDto.convert(savedEntity)));
 
         WeatherDto actual = this.weatherService.getWeather(requestedCity);
 
         assertEquals(expected,actual);
 
-        verify(weatherRepository).findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity);
-        verifyNoInteractions(restTemplate);
+        verify(weatherRepository).findLatestByRequestedCityName(requestedCity);
+        verifyNoInteractions(weatherStackClient);
         verifyNoMoreInteractions(weatherRepository);
     }
 
@@ -145,17 +210,260 @@ class WeatherServiceTest extends TestSupport {
 
         WeatherDto expected = new WeatherDto(savedEntity.getCityName(), savedEntity.getCountry(), savedEntity.getTemperature(), savedEntity.getUpdatedTime());
 
-        when(weatherRepository.findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity)).thenReturn(Optional.of(oldEntity));
-        when(restTemplate.getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity, String.class)).thenReturn(ResponseEntity.ok(responseJson));
-        when(weatherRepository.save(any(WeatherEntity.class))).thenReturn(savedEntity);
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.of(WeatherDto.convert(oldEntity)));
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(responseJson));
 
         WeatherDto actual = this.weatherService.getWeather(requestedCity);
 
         assertEquals(expected, actual);
 
-        verify(weatherRepository).findFirstByRequestedCityNameOrderByUpdatedTimeDesc(requestedCity);
-        verify(restTemplate).getForEntity(WEATHER_STACK_API_BASE_URL+requestedCity, String.class);
-        verify(weatherRepository).save(any(WeatherEntity.class));
+        verify(weatherRepository).findLatestByRequestedCityName(requestedCity);
+        verify(weatherStackClient).getCurrentWeather(requestedCity);
+        verify(writeBehindQueue).enqueue(any(WeatherEntity.class));
+    }
+
+    @Test
+    public void testGetWeather_whenCityIsOlderThan30MinutesAndStaleWhileRevalidateEnabled_shouldReturnStaleWeatherAndRefreshInBackground() throws Exception {
+        new Constants().setStaleWhileRevalidate(true);
+        String responseJson = getAntalyaWeatherJson();
+        WeatherResponse weatherResponse = this.objectMapper.readValue(responseJson, WeatherResponse.class);
+        WeatherEntity oldEntity = new WeatherEntity(
+                "id",
+                requestedCity,
+                "Antalya",
+                "Turkey",
+                16,
+                getCurrentLocalDateTime().minusMinutes(45),
+                LocalDateTime.parse(weatherResponse.location().localTime(), formatter));
+        WeatherEntity savedEntity = getSavedWeatherEntity(weatherResponse.location().localTime());
+
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.of(WeatherDto.convert(oldEntity)));
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(responseJson));
+
+        WeatherDto actual = this.weatherService.getWeather(requestedCity);
+
+        assertEquals(WeatherDto.convert(oldEntity), actual);
+        assertEquals(Optional.of(Duration.ofMinutes(45)), weatherService.getStaleAge(actual));
+        verifyNoInteractions(weatherStackClient);
+
+        ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+        verify(refreshExecutor).submit(eq(requestedCity), refresh.capture());
+        refresh.getValue().run();
+
+        verify(weatherStackClient).getCurrentWeather(requestedCity);
+        assertEquals(WeatherDto.convert(savedEntity), cacheManager.getCache("weathers").get(requestedCity, WeatherDto.class));
+    }
+
+    @Test
+    public void testGetWeather_shouldTimeEachStageUnderTheOutcomeOfTheLookup() throws Exception {
+        WeatherDto upToDateWeather = new WeatherDto("Izmir", "Turkey", 21, getCurrentLocalDateTime().minusMinutes(5));
+        when(weatherRepository.findLatestByRequestedCityName("Izmir")).thenReturn(Optional.of(upToDateWeather));
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(getAntalyaWeatherJson()));
+
+        weatherService.getWeather("Izmir");
+        weatherService.getWeather("Izmir");
+        weatherService.getWeather(requestedCity);
+
+        assertEquals(1, stageCount("cache", "cache-hit"));
+        assertEquals(1, stageCount("cache", "db-hit"));
+        assertEquals(1, stageCount("repository", "db-hit"));
+        assertNull(meterRegistry.find("weather.stage").tag("stage", "upstream").tag("outcome", "db-hit").timer());
+        for (String stage : List.of("cache", "repository", "upstream", "decode", "save")) {
+            assertEquals(1, stageCount(stage, "upstream"), stage);
+        }
+    }
+
+    @Test
+    public void testGetWeather_whenReportIsWaitingInWriteBehindQueue_shouldReturnItWithoutReadingDatabase() {
+        WeatherDto queuedWeather = new WeatherDto("Antalya", "Turkey", 20, getCurrentLocalDateTime().minusMinutes(1));
+        when(writeBehindQueue.pendingWeather(requestedCity)).thenReturn(Optional.of(queuedWeather));
+
+        WeatherDto actual = weatherService.getWeather(requestedCity);
+
+        assertEquals(queuedWeather, actual);
+        verifyNoInteractions(weatherRepository, weatherStackClient);
+    }
+
+    @Test
+    public void testGetWeather_whenCityIsOlderThan30MinutesAndQuotaIsUsedUp_shouldReturnStaleWeatherWithoutCallingWeatherStackAPI() {
+        WeatherDto oldWeather = new WeatherDto("Antalya", "Turkey", 16, getCurrentLocalDateTime().minusMinutes(45));
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.of(oldWeather));
+        doThrow(new UpstreamQuotaExceededException(requestedCity, Duration.ofSeconds(5))).when(upstreamQuota).acquire(requestedCity);
+
+        WeatherDto actual = weatherService.getWeather(requestedCity);
+
+        assertEquals(oldWeather, actual);
+        assertEquals(Optional.of(Duration.ofMinutes(45)), weatherService.getStaleAge(actual));
+        verifyNoInteractions(weatherStackClient);
+        verify(writeBehindQueue, never()).enqueue(any());
+    }
+
+    @Test
+    public void testGetWeather_whenCityIsOlderThan30MinutesAndCircuitIsOpen_shouldReturnLatestStoredWeatherAsStale() {
+        WeatherDto oldWeather = new WeatherDto("Antalya", "Turkey", 16, getCurrentLocalDateTime().minusMinutes(45));
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("weatherstack");
+        circuitBreaker.transitionToOpenState();
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.of(oldWeather));
+        when(weatherStackClient.getCurrentWeather(requestedCity))
+                .thenReturn(CompletableFuture.failedFuture(CallNotPermittedException.createCallNotPermittedException(circuitBreaker)));
+
+        WeatherDto actual = weatherService.getWeather(requestedCity);
+
+        assertEquals(oldWeather, actual);
+        assertEquals(Optional.of(Duration.ofMinutes(45)), weatherService.getStaleAge(actual));
+        verify(writeBehindQueue, never()).enqueue(any());
+        // the call never reached weatherstack, so its token is given back
+        verify(upstreamQuota).refund(requestedCity);
+    }
+
+    @Test
+    public void testGetWeather_whenCityIsNewAndQuotaIsUsedUp_shouldThrowUpstreamQuotaExceededException() {
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        doThrow(new UpstreamQuotaExceededException(requestedCity, Duration.ofSeconds(5))).when(upstreamQuota).acquire(requestedCity);
+
+        assertThatThrownBy(() -> weatherService.getWeather(requestedCity))
+                .isInstanceOf(UpstreamQuotaExceededException.class);
+
+        verifyNoInteractions(weatherStackClient);
+    }
+
+    @Test
+    public void testGetWeather_whenWeatherStackResolvesSpellingToAnotherName_shouldStoreWeatherUnderCanonicalName() throws Exception {
+        String canonicalName = "antalya, turkey";
+        String responseJson = getAntalyaWeatherJson();
+        WeatherResponse weatherResponse = this.objectMapper.readValue(responseJson, WeatherResponse.class);
+        WeatherDto expected = WeatherDto.convert(getSavedWeatherEntity(weatherResponse.location().localTime()));
+
+        when(cityAliasIndex.resolve("ANTALYA ")).thenReturn("antalya");
+        when(cityAliasIndex.register("antalya", "Antalya", "Turkey")).thenReturn(canonicalName);
+        when(weatherRepository.findLatestByRequestedCityName("antalya")).thenReturn(Optional.empty());
+        when(weatherStackClient.getCurrentWeather("antalya")).thenReturn(completedFuture(responseJson));
+
+        WeatherDto actual = weatherService.getWeather("ANTALYA ");
+
+        assertEquals(expected, actual);
+        assertEquals(expected, cacheManager.getCache("weathers").get(canonicalName, WeatherDto.class));
+        ArgumentCaptor<WeatherEntity> queued = ArgumentCaptor.forClass(WeatherEntity.class);
+        verify(writeBehindQueue).enqueue(queued.capture());
+        assertEquals(canonicalName, queued.getValue().getRequestedCityName());
+        verify(cityAliasIndex).recordLookup("ANTALYA ", "antalya", false);
+    }
+
+    @Test
+    public void testGetWeathers_whenSpellingsResolveToSameCity_shouldLookItUpOnceAndAnswerEachSpelling() {
+        WeatherDto cachedWeather = new WeatherDto("Istanbul", "Turkey", 15, getCurrentLocalDateTime());
+        cacheManager.getCache("weathers").put("istanbul, turkey", cachedWeather);
+        when(cityAliasIndex.resolve("Istanbul")).thenReturn("istanbul, turkey");
+        when(cityAliasIndex.resolve("İSTANBUL")).thenReturn("istanbul, turkey");
+
+        List<BatchWeatherResult> actual = weatherService.getWeathers(List.of("Istanbul", "İSTANBUL"));
+
+        assertEquals(List.of(
+                BatchWeatherResult.of("Istanbul", BatchWeatherResult.Status.CACHE, cachedWeather),
+                BatchWeatherResult.of("İSTANBUL", BatchWeatherResult.Status.CACHE, cachedWeather)), actual);
+        verify(cityAliasIndex).recordLookup("Istanbul", "istanbul, turkey", true);
+        verify(cityAliasIndex, never()).recordLookup(eq("İSTANBUL"), anyString(), anyBoolean());
+        verifyNoInteractions(weatherRepository, weatherStackClient);
+    }
+
+    @Test
+    public void testGetWeathers_shouldResolveCacheHitsDatabaseHitsWithOneQueryAndFetchTheRestFromWeatherStackAPI() throws Exception {
+        String responseJson = getAntalyaWeatherJson();
+        WeatherResponse weatherResponse = this.objectMapper.readValue(responseJson, WeatherResponse.class);
+        WeatherEntity savedEntity = getSavedWeatherEntity(weatherResponse.location().localTime());
+        WeatherDto cachedWeather = new WeatherDto("Istanbul", "Turkey", 15, getCurrentLocalDateTime());
+        WeatherEntity izmirEntity = new WeatherEntity("izmir-id", "Izmir", "Izmir", "Turkey", 21, getCurrentLocalDateTime().minusMinutes(5), getCurrentLocalDateTime());
+        cacheManager.getCache("weathers").put("Istanbul", cachedWeather);
+
+        when(weatherRepository.findLatestByRequestedCityNameIn(List.of("Izmir", requestedCity, "Unknown"))).thenReturn(List.of(izmirEntity));
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(completedFuture(responseJson));
+        when(weatherStackClient.getCurrentWeather("Unknown")).thenReturn(completedFuture(getErrorResponseJson()));
+
+        List<BatchWeatherResult> actual = weatherService.getWeathers(List.of("Istanbul", "Izmir", requestedCity, "Unknown", "Istanbul"));
+
+        assertEquals(List.of(
+                BatchWeatherResult.of("Istanbul", BatchWeatherResult.Status.CACHE, cachedWeather),
+                BatchWeatherResult.of("Izmir", BatchWeatherResult.Status.DATABASE, WeatherDto.convert(izmirEntity)),
+                BatchWeatherResult.of(requestedCity, BatchWeatherResult.Status.UPSTREAM, WeatherDto.convert(savedEntity)),
+                BatchWeatherResult.error("Unknown", "Access Restricted - Your current Subscription Plan does not support HTTPS Encryption.")), actual);
+
+        verify(weatherRepository).findLatestByRequestedCityNameIn(List.of("Izmir", requestedCity, "Unknown"));
+        verify(weatherStackClient).getCurrentWeather(requestedCity);
+        verify(weatherStackClient).getCurrentWeather("Unknown");
+        verify(weatherRepository, never()).findLatestByRequestedCityName(any());
+    }
+
+    @Test
+    public void testGetWeathers_whenInterruptedWhileCitiesWaitForTheirTurn_shouldReturnErrorForThoseCities() {
+        // 2 calls at a time, each takes 300 ms, so at least one of the 3 cities is still waiting for a permit
+        byte[] responseJson = getAntalyaWeatherJson().getBytes(StandardCharsets.UTF_8);
+        when(weatherStackClient.getCurrentWeather(anyString())).thenAnswer(invocation -> CompletableFuture.supplyAsync(
+                () -> responseJson, CompletableFuture.delayedExecutor(300, TimeUnit.MILLISECONDS)));
+
+        Thread.currentThread().interrupt();
+        List<BatchWeatherResult> actual;
+        try {
+            actual = weatherService.getWeathers(List.of("Izmir", "Bursa", "Ankara"));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        // the batch still answers every city, those that never got a permit with an error
+        assertEquals(List.of("Izmir", "Bursa", "Ankara"), actual.stream().map(BatchWeatherResult::city).toList());
+        assertTrue(actual.stream().allMatch(result -> result.status() == BatchWeatherResult.Status.UPSTREAM
+                || "Weather lookup was interrupted".equals(result.error())));
+        assertTrue(actual.stream().anyMatch(result -> result.status() == BatchWeatherResult.Status.ERROR));
+    }
+
+    @Test
+    public void testGetWeatherAsync_whenFirstRequestForRequestedCity_shouldCompleteWhenWeatherStackAnswersAndCacheWeather() throws Exception {
+        CompletableFuture<byte[]> upstream = new CompletableFuture<>();
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        when(weatherStackClient.getCurrentWeather(requestedCity)).thenReturn(upstream);
+
+        CompletableFuture<WeatherDto> weather = weatherService.getWeatherAsync(requestedCity);
+        CompletableFuture<WeatherDto> joined = weatherService.getWeatherAsync(requestedCity);
+        assertFalse(weather.isDone());
+
+        upstream.complete(getAntalyaWeatherJson().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(18, weather.get(5, TimeUnit.SECONDS).temperature());
+        assertEquals(weather.get(), joined.get(5, TimeUnit.SECONDS));
+        assertEquals(weather.get(), weatherService.getWeather(requestedCity));
+        verify(weatherStackClient).getCurrentWeather(requestedCity);
+        verify(writeBehindQueue).enqueue(any(WeatherEntity.class));
+        assertEquals(1, stageCount("upstream", "upstream"));
+    }
+
+    @Test
+    public void testGetWeatherAsync_whenCityIsOlderThan30MinutesAndCircuitIsOpen_shouldCompleteWithLatestStoredWeather() throws Exception {
+        WeatherDto oldWeather = new WeatherDto("Antalya", "Turkey", 16, getCurrentLocalDateTime().minusMinutes(45));
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("weatherstack");
+        circuitBreaker.transitionToOpenState();
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.of(oldWeather));
+        when(weatherStackClient.getCurrentWeather(requestedCity))
+                .thenReturn(CompletableFuture.failedFuture(CallNotPermittedException.createCallNotPermittedException(circuitBreaker)));
+
+        assertEquals(oldWeather, weatherService.getWeatherAsync(requestedCity).get(5, TimeUnit.SECONDS));
+        assertEquals(1, stageCount("repository", "stale"));
+        verify(upstreamQuota).refund(requestedCity);
+        // the stale report is not cached, so it can not replace a fresh one
+        assertNull(cacheManager.getCache("weathers").get(requestedCity));
+    }
+
+    @Test
+    public void testGetWeatherAsync_whenCityIsNewAndQuotaIsUsedUp_shouldFailWithUpstreamQuotaExceededException() {
+        when(weatherRepository.findLatestByRequestedCityName(requestedCity)).thenReturn(Optional.empty());
+        doThrow(new UpstreamQuotaExceededException(requestedCity, Duration.ofSeconds(5))).when(upstreamQuota).acquire(requestedCity);
+
+        assertThatThrownBy(() -> weatherService.getWeatherAsync(requestedCity).join())
+                .hasCauseInstanceOf(UpstreamQuotaExceededException.class);
+        verifyNoInteractions(weatherStackClient);
+    }
+
+    private long stageCount(String stage, String outcome) {
+        return meterRegistry.get("weather.stage").tag("stage", stage).tag("outcome", outcome).timer().count();
     }
 
     @Test
@@ -0,0 +1,32 @@
+package com.example.weather.service;
+
+import com.example.weather.service.WeatherStageMetrics.Outcome;
+import com.example.weather.service.WeatherStageMetrics.Stage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeatherStageMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WeatherStageMetrics stageMetrics = new WeatherStageMetrics(meterRegistry);
+
+    @Test
+    void testConstructor_shouldRegisterOnlyTheReachableStageOutcomePairs() {
+        assertEquals(19, meterRegistry.find("weather.stage").timers().size());
+        assertEquals(6, meterRegistry.find("weather.stage").tag("stage", "cache").timers().size());
+        assertEquals(1, meterRegistry.find("weather.stage").tag("outcome", "cache-hit").timers().size());
+    }
+
+    @Test
+    void testRecord_whenPairIsNotRegisteredUpFront_shouldRegisterItOnFirstUse() {
+        stageMetrics.record(Stage.SAVE, Outcome.DB_HIT, System.nanoTime());
+        WeatherStageMetrics.Trace trace = stageMetrics.trace();
+        trace.end(Stage.SAVE, System.nanoTime());
+        trace.finish(Outcome.DB_HIT);
+
+        assertEquals(2, meterRegistry.get("weather.stage").tag("stage", "save").tag("outcome", "db-hit").timer().count());
+        assertEquals(20, meterRegistry.find("weather.stage").timers().size());
+    }
+}
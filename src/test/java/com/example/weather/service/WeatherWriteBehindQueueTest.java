@@ -0,0 +1,177 @@
+package com.example.weather.service;
+
+import com.example.weather.TestSupport;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.repositroy.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class WeatherWriteBehindQueueTest extends TestSupport {
+
+    private WeatherRepository weatherRepository;
+    private WeatherWriteBehindQueue writeBehindQueue;
+
+    @BeforeEach
+    void setUp() {
+        weatherRepository = mock(WeatherRepository.class);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writeBehindQueue.destroy();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEnqueue_whenBatchSizeReached_shouldSaveReportsInOneBatch() {
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 3, 60000, 100, 3, 10, new SimpleMeterRegistry());
+
+        List<WeatherEntity> weathers = List.of(weather("Antalya"), weather("Izmir"), weather("Ankara"));
+        weathers.forEach(writeBehindQueue::enqueue);
+
+        ArgumentCaptor<List<WeatherEntity>> batch = ArgumentCaptor.forClass(List.class);
+        verify(weatherRepository, timeout(5000)).saveAll(batch.capture());
+        assertEquals(weathers, batch.getValue());
+    }
+
+    @Test
+    void testEnqueue_whenFlushIntervalPassed_shouldSavePartialBatch() {
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 50, 100, 100, 3, 10, new SimpleMeterRegistry());
+
+        writeBehindQueue.enqueue(weather("Antalya"));
+
+        verify(weatherRepository, timeout(5000)).saveAll(anyList());
+    }
+
+    @Test
+    void testPendingWeather_shouldReturnLatestQueuedReportUntilItIsSaved() throws InterruptedException {
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 50, 60000, 100, 3, 10, new SimpleMeterRegistry());
+        WeatherEntity latest = weather("Antalya");
+
+        writeBehindQueue.enqueue(weather("Antalya"));
+        writeBehindQueue.enqueue(latest);
+
+        assertEquals(Optional.of(WeatherDto.convert(latest)), writeBehindQueue.pendingWeather("Antalya"));
+        verifyNoInteractions(weatherRepository);
+
+        writeBehindQueue.destroy();
+
+        verify(weatherRepository).saveAll(anyList());
+        assertEquals(Optional.empty(), writeBehindQueue.pendingWeather("Antalya"));
+    }
+
+    @Test
+    void testFlush_whenSaveAllFails_shouldRetryTheBatchUntilItIsSaved() {
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 50, 100, 100, 3, 10, new SimpleMeterRegistry());
+        when(weatherRepository.saveAll(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database is down"))
+                .thenReturn(List.of());
+        WeatherEntity antalya = weather("Antalya");
+
+        writeBehindQueue.enqueue(antalya);
+
+        verify(weatherRepository, timeout(5000).times(2)).saveAll(List.of(antalya));
+        await(() -> writeBehindQueue.pendingWeather("Antalya").isEmpty());
+    }
+
+    @Test
+    void testFlush_whenEveryAttemptFails_shouldQueueTheBatchAgainAndKeepServingIt() {
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 50, 100, 100, 2, 200, new SimpleMeterRegistry());
+        AtomicInteger attempts = new AtomicInteger();
+        when(weatherRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            if (attempts.incrementAndGet() <= 4) {
+                throw new DataAccessResourceFailureException("database is down");
+            }
+            return List.of();
+        });
+        WeatherEntity antalya = weather("Antalya");
+
+        writeBehindQueue.enqueue(antalya);
+
+        // two rounds of two attempts, the report is served from the queue in between
+        verify(weatherRepository, timeout(5000).atLeast(3)).saveAll(List.of(antalya));
+        assertEquals(Optional.of(WeatherDto.convert(antalya)), writeBehindQueue.pendingWeather("Antalya"));
+        verify(weatherRepository, timeout(5000).times(5)).saveAll(List.of(antalya));
+        await(() -> writeBehindQueue.pendingWeather("Antalya").isEmpty());
+    }
+
+    @Test
+    void testDestroy_whenBatchIsBeingSaved_shouldLetTheSaveCompleteWithoutInterruptingIt() throws Exception {
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 1, 60000, 100, 1, 10, new SimpleMeterRegistry());
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch releaseSave = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        when(weatherRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            saving.countDown();
+            releaseSave.await(5, TimeUnit.SECONDS);
+            interrupted.set(Thread.currentThread().isInterrupted());
+            return List.of();
+        });
+        WeatherEntity antalya = weather("Antalya");
+        WeatherEntity izmir = weather("Izmir");
+        writeBehindQueue.enqueue(antalya);
+        writeBehindQueue.enqueue(izmir);
+        assertTrue(saving.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> destroyed = CompletableFuture.runAsync(() -> {
+            try {
+                writeBehindQueue.destroy();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(destroyed.isDone());
+        releaseSave.countDown();
+        destroyed.get(5, TimeUnit.SECONDS);
+
+        assertFalse(interrupted.get());
+        // the report queued behind the one being saved is saved before the writer stops
+        verify(weatherRepository).saveAll(List.of(antalya));
+        verify(weatherRepository).saveAll(List.of(izmir));
+    }
+
+    @Test
+    void testEnqueue_whenQueueIsStopped_shouldSaveTheReportOnTheCallerThread() throws InterruptedException {
+        writeBehindQueue = new WeatherWriteBehindQueue(weatherRepository, 50, 60000, 100, 3, 10, new SimpleMeterRegistry());
+        writeBehindQueue.destroy();
+        WeatherEntity antalya = weather("Antalya");
+
+        writeBehindQueue.enqueue(antalya);
+
+        verify(weatherRepository).saveAll(List.of(antalya));
+        assertEquals(Optional.empty(), writeBehindQueue.pendingWeather("Antalya"));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in 5 seconds");
+            Thread.onSpinWait();
+        }
+    }
+
+    private WeatherEntity weather(String city) {
+        return new WeatherEntity(city, city, "Turkey", 18, getCurrentLocalDateTime(), getCurrentLocalDateTime());
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.weather.stream;
+
+import com.example.weather.TestSupport;
+import com.example.weather.cache.WeatherResponseCache;
+import com.example.weather.dto.BatchWeatherResult;
+import com.example.weather.dto.WeatherDto;
+import com.example.weather.model.WeatherEntity;
+import com.example.weather.service.CityAliasIndex;
+import com.example.weather.service.WeatherService;
+import com.example.weather.service.WeatherStoredEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WeatherBroadcasterTest extends TestSupport {
+
+    private WeatherService weatherService;
+    private Deque<RecordingEmitter> emitters;
+    private WeatherBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        weatherService = mock(WeatherService.class);
+        CityAliasIndex cityAliasIndex = mock(CityAliasIndex.class);
+        when(cityAliasIndex.resolve(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        WeatherResponseCache responseCache = new WeatherResponseCache(new ObjectMapper().registerModule(new JavaTimeModule()),
+                Clock.systemDefaultZone(), new SimpleMeterRegistry(), 30, 100);
+
+        emitters = new ArrayDeque<>();
+        // buffers 2 events per subscriber, a write is stalled after 500 ms, 4 sender threads
+        broadcaster = new WeatherBroadcaster(weatherService, cityAliasIndex, responseCache, new SimpleMeterRegistry(), 2, 100, 60000, 500, 4) {
+            @Override
+            SseEmitter newEmitter() {
+                return emitters.removeFirst();
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.destroy();
+    }
+
+    @Test
+    void testSubscribe_shouldSendCurrentReportThenNewReportsOfSubscribedCitiesOnly() {
+        RecordingEmitter emitter = nextEmitter();
+        when(weatherService.getWeathers(List.of(requestedCity))).thenReturn(List.of(
+                BatchWeatherResult.of(requestedCity, BatchWeatherResult.Status.CACHE, weather(18))));
+
+        broadcaster.subscribe(List.of(requestedCity));
+        store(requestedCity, 21);
+        store("Izmir", 25);
+
+        await(() -> emitter.events.size() == 2);
+        assertTrue(emitter.events.get(0).contains("\"temperature\":18"));
+        assertTrue(emitter.events.get(1).startsWith("event:weather"));
+        assertTrue(emitter.events.get(1).contains("\"temperature\":21"));
+        sleep();
+        assertEquals(2, emitter.events.size());
+    }
+
+    @Test
+    void testSubscribe_whenNoCityIsKnown_shouldSendErrorEventsAndEndStream() {
+        RecordingEmitter emitter = nextEmitter();
+        when(weatherService.getWeathers(List.of("Atlantis"))).thenReturn(List.of(BatchWeatherResult.error("Atlantis", "unknown city")));
+
+        broadcaster.subscribe(List.of("Atlantis"));
+        store("Atlantis", 21);
+
+        assertEquals(1, emitter.events.size());
+        assertTrue(emitter.events.get(0).startsWith("event:error"));
+        assertTrue(emitter.completed);
+        assertEquals(0, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void testOnWeatherStored_whenSubscriberDoesNotKeepUp_shouldDropItAndKeepSendingToOthers() {
+        RecordingEmitter slow = nextEmitter();
+        RecordingEmitter fast = nextEmitter();
+        slow.blocked = new CountDownLatch(1);
+        when(weatherService.getWeathers(List.of(requestedCity))).thenReturn(List.of(
+                BatchWeatherResult.of(requestedCity, BatchWeatherResult.Status.CACHE, weather(18))));
+        broadcaster.subscribe(List.of(requestedCity));
+        broadcaster.subscribe(List.of(requestedCity));
+
+        // the slow client is stuck writing its first event, so its buffer of 2 fills up
+        for (int temperature = 20; temperature < 24; temperature++) {
+            store(requestedCity, temperature);
+            // the fast client reads each event before the next one, so only the slow one falls behind
+            int sent = temperature - 18;
+            await(() -> fast.events.size() == sent);
+        }
+
+        await(() -> broadcaster.subscriberCount() == 1);
+        await(() -> fast.events.size() == 5);
+        // the response is ended once the blocked write returns
+        slow.blocked.countDown();
+        await(() -> slow.completed);
+        assertEquals(1, slow.events.size());
+    }
+
+    @Test
+    void testOnWeatherStored_whenWritesOfMoreSubscribersBlockThanThereAreSenderThreads_shouldQueueTheOthers() {
+        List<RecordingEmitter> blocked = new ArrayList<>();
+        CountDownLatch stalled = new CountDownLatch(1);
+        for (int i = 0; i < 20; i++) {
+            RecordingEmitter emitter = nextEmitter();
+            emitter.blocked = stalled;
+            blocked.add(emitter);
+        }
+        RecordingEmitter fast = nextEmitter();
+        when(weatherService.getWeathers(List.of(requestedCity))).thenReturn(List.of(
+                BatchWeatherResult.of(requestedCity, BatchWeatherResult.Status.CACHE, weather(18))));
+        for (int i = 0; i <= blocked.size(); i++) {
+            broadcaster.subscribe(List.of(requestedCity));
+        }
+
+        long start = System.nanoTime();
+        store(requestedCity, 21);
+        store(requestedCity, 22);
+
+        // the publisher does not wait for the stuck clients, and they take no more threads than the pool has
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+        await(() -> blocked.stream().filter(emitter -> emitter.writing).count() == 4);
+        sleep();
+        assertEquals(4, blocked.stream().filter(emitter -> emitter.writing).count());
+        assertEquals(0, fast.events.size());
+        assertEquals(blocked.size() + 1, broadcaster.subscriberCount());
+
+        // the queued streams are written once the stuck writes return
+        stalled.countDown();
+        await(() -> blocked.stream().allMatch(emitter -> emitter.events.size() == 3));
+        await(() -> fast.events.size() == 3);
+    }
+
+    @Test
+    void testSendHeartbeats_whenWriteIsStalledLongerThanWriteTimeout_shouldDropSubscriber() throws InterruptedException {
+        RecordingEmitter stalled = nextEmitter();
+        stalled.blocked = new CountDownLatch(1);
+        when(weatherService.getWeathers(List.of(requestedCity))).thenReturn(List.of(
+                BatchWeatherResult.of(requestedCity, BatchWeatherResult.Status.CACHE, weather(18))));
+        broadcaster.subscribe(List.of(requestedCity));
+
+        broadcaster.sendHeartbeats();
+        assertEquals(1, broadcaster.subscriberCount());
+        Thread.sleep(1000);
+        broadcaster.sendHeartbeats();
+
+        // its buffer is not full, but the write of its first event has not returned for longer than the write timeout
+        assertEquals(0, broadcaster.subscriberCount());
+        stalled.blocked.countDown();
+        await(() -> stalled.completed);
+    }
+
+    @Test
+    void testSendHeartbeats_whenClientWentAway_shouldUnsubscribeIt() {
+        RecordingEmitter emitter = nextEmitter();
+        when(weatherService.getWeathers(List.of(requestedCity))).thenReturn(List.of(
+                BatchWeatherResult.of(requestedCity, BatchWeatherResult.Status.CACHE, weather(18))));
+        broadcaster.subscribe(List.of(requestedCity));
+        await(() -> emitter.events.size() == 1);
+
+        emitter.gone = true;
+        broadcaster.sendHeartbeats();
+
+        await(() -> broadcaster.subscriberCount() == 0);
+        assertTrue(emitter.completed);
+        assertFalse(emitter.events.stream().anyMatch(event -> event.contains("heartbeat")));
+    }
+
+    private RecordingEmitter nextEmitter() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitters.addLast(emitter);
+        return emitter;
+    }
+
+    private void store(String city, int temperature) {
+        broadcaster.onWeatherStored(new WeatherStoredEvent(
+                new WeatherEntity(city, city, "Turkey", temperature, getCurrentLocalDateTime(), getCurrentLocalDateTime())));
+    }
+
+    private WeatherDto weather(int temperature) {
+        return new WeatherDto("Antalya", "Turkey", temperature, getCurrentLocalDateTime().minusMinutes(1));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch blocked;
+        private volatile boolean gone;
+        private volatile boolean writing;
+        private volatile boolean completed;
+
+        // synchronized like ResponseBodyEmitter, so complete waits for a blocked send
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) throws IOException {
+            if (gone) {
+                throw new IOException("Broken pipe");
+            }
+            CountDownLatch latch = blocked;
+            if (latch != null) {
+                writing = true;
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    writing = false;
+                }
+            }
+            events.add(items.stream()
+                    .map(item -> item.getData() instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(item.getData()))
+                    .collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+}